@@ -6,11 +6,35 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
+import com.client.asyncworker.Scheduler;
+import com.client.basepackages.BatchPackage;
+import com.client.basepackages.KeepAlive;
+import com.client.basepackages.ProtocolHandshake;
+import com.client.basepackages.ReconnectPackage;
+import com.client.basepackages.StreamChunk;
 import com.client.main.Client;
+import com.client.packageing.BufferPool;
 import com.client.packageing.DataPackage;
+import com.client.packageing.LazyPackage;
 import com.client.packageing.PackageInfo;
 import com.client.packageing.PackageManager;
 import com.client.packageing.UnknownPackageCallback;
@@ -24,6 +48,20 @@ enum State{
 
 public class ClientConnection{
 	
+	private static final int READ_BUFFER_SIZE = 8192;
+	private static final int DEFAULT_FLUSH_THRESHOLD = 8192;
+	private static final long DEFAULT_FLUSH_LINGER = 1;
+	private static final int DEFAULT_SEND_QUEUE_CAPACITY = 4096;
+	private static final long DEFAULT_LOW_WATERMARK = 32 * 1024;
+	private static final long DEFAULT_HIGH_WATERMARK = 64 * 1024;
+	private static final int MAX_DRAIN = 256;
+	private static final int CHANNEL_QUANTUM = 1024;
+	private static final int MAX_BATCHED_FRAME_SIZE = 256;
+	private static final int MAX_BATCH_PACKAGES = 64;
+	private static final int HANDSHAKE_NONE = 0;
+	private static final int HANDSHAKE_OFFERED = 1;
+	private static final int HANDSHAKE_DONE = 2;
+	
 	private Socket socket;
 	private PackageManager packageManager;
 	
@@ -34,10 +72,50 @@ public class ClientConnection{
 	private OutputStream out;
 	private InputStream reader;
 	
+	private SocketChannel channel;
+	private ConnectionSelector connectionSelector;
+	private volatile SelectorLoop selectorLoop;
+	private SelectionKey selectionKey;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private final FrameDecoder decoder = new FrameDecoder(this);
+	private final FrameEncoder encoder = new FrameEncoder();
+	private final StreamManager streams = new StreamManager(this);
+	private final RequestTracker requests = new RequestTracker();
+	private int offeredFeatures = 0;
+	private volatile short protocolVersion = 0;
+	private volatile int handshakeState = HANDSHAKE_NONE;
+	private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+	private ByteBuffer sendBuffer = ByteBuffer.allocate(Math.max(DEFAULT_FLUSH_THRESHOLD, Client.getMaxPackageSize() + DataPackage.IDLENGTH + Integer.BYTES));
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+	private long flushLinger = DEFAULT_FLUSH_LINGER;
+	private ScheduledFuture<?> lingerTask = null;
+	private volatile boolean flushRequested = false;
+	private final SendQueue sendQueue = new SendQueue(DEFAULT_SEND_QUEUE_CAPACITY, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+	private final ArrayDeque<SendQueue.Entry> drained = new ArrayDeque<>();
+	private final LogicalChannel defaultChannel = new LogicalChannel(this, 0, LogicalChannel.DEFAULT_WEIGHT, sendQueue);
+	private volatile LogicalChannel[] channels = new LogicalChannel[] {defaultChannel};
+	private int nextChannel = 0;
+	private volatile boolean sendBatching = false;
+	private final ArrayList<DataPackage> batch = new ArrayList<>();
+	private int batchChannel = 0;
+	private int batchBytes = 0;
+	private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+	private volatile Thread writerThread = null;
+	
 	private List<ClientPackageReceiveCallback> callback = new ArrayList<ClientPackageReceiveCallback>();
 	private UnknownPackageCallback unknownPackageCallback = null;
 	private ClientTimeOutCallback clientTimeOutCallback = null;
 	private ClientDisconnectCallback clientDisconnectCallback = null;
+	private ClientWritabilityCallback clientWritabilityCallback = null;
+	private volatile BufferPool receiveBufferPool = null;
+	private volatile PackageDispatcher dispatcher = null;
+	private volatile ReplayBuffer replayBuffer = null;
+	private volatile byte[] sessionToken = null;
+	private volatile long lastReadNanos = System.nanoTime();
+	private volatile long lastWriteNanos = System.nanoTime();
+	private volatile long roundTripNanos = -1;
+	private volatile boolean heartbeatPending = false;
 	
 	public ClientConnection(Socket socket, PackageManager packageManager){
 		this(socket, packageManager, -1);
@@ -69,6 +147,33 @@ public class ClientConnection{
 		this.state = State.Active;
 	}
 	
+	/**
+	 * Creates a client connection that uses a non blocking socket channel.<br>
+	 * The connection will not start a thread of its own. Reading and writing is done by the threads of the given connection selector.<br>
+	 * Packages are decoded as soon as the bytes arrive and are relayed via the same callback functions as for a blocking connection.<br>
+	 * <br>
+	 * Socket timeouts are not supported for non blocking connections.
+	 * 
+	 * @param channel A connected socket channel.
+	 * @param packageManager The package manager used to look up received packages.
+	 * @param connectionSelector The selector that will drive the connection.
+	 * */
+	public ClientConnection(SocketChannel channel, PackageManager packageManager, ConnectionSelector connectionSelector) {
+		if(channel == null || connectionSelector == null)
+			throw new NullPointerException("Channel and connection selector can not be null!");
+		this.packageManager = packageManager;
+		this.channel = channel;
+		this.socket = channel.socket();
+		this.connectionSelector = connectionSelector;
+		
+		try {
+			this.channel.configureBlocking(false);
+			this.state = State.Active;
+		} catch (IOException e) {
+			Client.logger.log(Level.ERROR, e, e.getClass());
+			this.state = State.Dead;
+		}
+	}
 	
 	/**
 	 * Enables the client connection and starts the client thread.<br>
@@ -81,69 +186,26 @@ public class ClientConnection{
 	 * 
 	 * */
 	public void enable() {
-		this.clientThread = new Thread(() -> {
+		if(this.connectionSelector != null) {
+			if(this.state == State.Active) this.connectionSelector.register(this);
+			return;
+		}
+		this.clientThread = Client.getThreadFactory().newThread(() -> {
 			if(this.state != State.Active) return;
 			try {
 				if(reader == null) return;
 				while(this.state == State.Active) {
-					DataPackage dataOut = null;
-					byte[] data = new byte[DataPackage.IDLENGTH];
-					
-					reader.read(data);
-					if(packageManager == null) {
-						Client.logger.log(Level.ERROR, "Package manager can not be null!");
-						disable();
+					int read = reader.read(readBuffer.array(), readBuffer.position(), readBuffer.remaining());
+					if(read < 0) {
+						disable(Level.INFO, "Remote closed connection! Stream ended.");
 						return;
 					}
-					PackageInfo info = this.packageManager.getPackageInfo(data);
-					
-					if(info == null) {
-						Client.logger.log(Level.ERROR, "Unknown package recived by: " + socket.getInetAddress().toString());
-						Client.logger.log(Level.ERROR, "Unknown package id: " + DataPackage.getFromByte(data));
-						if(this.unknownPackageCallback != null) unknownPackageCallback.handle(data, this);
-						disable();
-						return;
-					}
-					if(!info.isDynamicLength()) {
-						
-						byte[] rawData = new byte[info.getLength()];
-						reader.read(rawData);
-						dataOut = info.getConstruct().build(info.getId(), info.getLength(), info.isDynamicLength(), rawData);
-					
-					}else {
-						
-						byte[] rawData = new byte[info.getLength()];
-						reader.read(rawData);
-						int length = (int) DataPackage.getFromByte(rawData);
-						if(length >= 0 && length < Client.getMaxPackageSize()) {
-							rawData = new byte[length];
-							reader.read(rawData);
-						}else if(length > Client.getMaxPackageSize() || length < 0) {
-							Client.logger.log(Level.ERROR, "Size missmatch!");
-							Client.logger.log(Level.ERROR, "PackageID: \t" + DataPackage.getFromByte(info.getId()));
-							Client.logger.log(Level.ERROR, "Length: \t" + length);
-							break;
-						}
-					
-						dataOut = info.getConstruct().build(info.getId() ,info.getLength(), info.isDynamicLength(), rawData);
-					
-					}
-					
-					for(ClientPackageReceiveCallback event : callback) event.call(dataOut, this);
-					if(dataOut != null && info.getCallback() != null) info.getCallback().call(dataOut, this);
-					if(this.state != State.Active) return;
+					readBuffer.position(readBuffer.position() + read);
+					lastReadNanos = System.nanoTime();
+					processReadBuffer();
 				}
 			}catch(SocketTimeoutException timeout) {
-				if(this.clientTimeOutCallback != null) {
-					try {
-						clientTimeOutCallback.call(this);
-					} catch (Exception e) {
-						Client.logger.log(Level.ERROR, "The timeout callback caused an error while executing!");
-						Client.logger.log(Level.ERROR, "The connection will be closed!");
-					}
-				}
-				this.disable();
-				Client.logger.log(Level.WARNING, "Connection timed out for: " + this.socket.getInetAddress().getHostAddress());
+				timeOut();
 			}catch (IOException e) {
 				if(this.state != State.Dead) {
 					Client.logger.log(Level.ERROR, e.getMessage());
@@ -155,25 +217,796 @@ public class ClientConnection{
 		this.clientThread.start();
 	}
 	
+	/**
+	 * Relays a received package to the receive callbacks and the package callback.
+	 * */
+	private void dispatch(PackageInfo info, DataPackage dataOut) {
+		for(ClientPackageReceiveCallback event : callback) event.call(dataOut, this);
+		if(dataOut != null && info.getCallback() != null) info.getCallback().call(dataOut, this);
+	}
+	
+	/**
+	 * Calls the timeout callback and closes the connection.<br>
+	 * Used when the socket timed out and by the heartbeat manager when nothing was read for too long.
+	 * */
+	void timeOut() {
+		if(this.state != State.Active) return;
+		if(this.clientTimeOutCallback != null) {
+			try {
+				clientTimeOutCallback.call(this);
+			} catch (Exception e) {
+				Client.logger.log(Level.ERROR, "The timeout callback caused an error while executing!");
+				Client.logger.log(Level.ERROR, "The connection will be closed!");
+			}
+		}
+		this.disable();
+		Client.logger.log(Level.WARNING, "Connection timed out for: " + this.socket.getInetAddress().getHostAddress());
+	}
+	
+	/**
+	 * Sends a heartbeat to the remote side.<br>
+	 * When <b>CORRELATION</b> was negotiated the heartbeat is sent as request. The remote side answers it right away,
+	 * so the time until the answer arrives is a sample of the round trip time. Otherwise a plain <b>KeepAlive</b> is sent.
+	 * 
+	 * @param timeoutNanos The time to wait for the answer.
+	 * */
+	void sendHeartbeat(long timeoutNanos) {
+		if((getNegotiatedFeatures() & WireFormat.CORRELATION) == 0 || heartbeatPending) {
+			sendAsync(new KeepAlive());
+			return;
+		}
+		heartbeatPending = true;
+		long start = System.nanoTime();
+		request(new KeepAlive(), Duration.ofNanos(timeoutNanos)).whenComplete((response, error) -> {
+			heartbeatPending = false;
+			if(error != null) return;
+			long sample = System.nanoTime() - start;
+			long rtt = roundTripNanos;
+			// Smoothed like the TCP round trip time, so a single slow answer does not count much.
+			roundTripNanos = rtt < 0 ? sample : rtt + (sample - rtt) / 8;
+		});
+	}
+	
+	/**
+	 * Called by the selector thread when the channel is readable.<br>
+	 * Reads all available bytes and dispatches every package that has been fully received.
+	 * */
+	void handleRead() {
+		if(this.state != State.Active) return;
+		int read;
+		try {
+			read = channel.read(readBuffer);
+		} catch (IOException e) {
+			if(this.state != State.Dead) Client.logger.log(Level.ERROR, e.getMessage());
+			disable();
+			return;
+		}
+		if(read < 0) {
+			disable(Level.INFO, "Remote closed connection! Stream ended.");
+			return;
+		}
+		if(read > 0) lastReadNanos = System.nanoTime();
+		processReadBuffer();
+	}
+	
+	/**
+	 * Feeds all bytes of the read buffer to the frame decoder and dispatches every completed package.<br>
+	 * Partially received frames are kept by the decoder until the next read.
+	 * */
+	private void processReadBuffer() {
+		readBuffer.flip();
+		while(this.state == State.Active) {
+			FrameDecoder.Result result = decoder.decode(readBuffer);
+			if(result == FrameDecoder.Result.INCOMPLETE) break;
+			if(result == FrameDecoder.Result.FRAME) {
+				DataPackage dataOut = decoder.getPackage();
+				if(dataOut instanceof BatchPackage) {
+					if(!expandBatch((BatchPackage) dataOut)) disable(Level.ERROR, "Invalid batch received!");
+					dataOut.release();
+					continue;
+				}
+				handlePackage(decoder.getInfo(), dataOut, decoder.getPackageId());
+				continue;
+			}
+			handleDecodeError(result);
+		}
+		readBuffer.clear();
+	}
+	
+	/**
+	 * Handles a received package. Packages used by the connection itself are handled right away,
+	 * all other packages are dispatched to the callbacks.
+	 * */
+	private void handlePackage(PackageInfo info, DataPackage dataOut, int packageId) {
+		if(dataOut instanceof KeepAlive && dataOut.getCorrelationId() != 0 && !dataOut.isResponse()) {
+			respond(dataOut, new KeepAlive());
+			dataOut.release();
+			return;
+		}
+		if(dataOut instanceof ProtocolHandshake) {
+			handleHandshake((ProtocolHandshake) dataOut);
+			dataOut.release();
+			return;
+		}
+		if(dataOut instanceof ReconnectPackage) {
+			// Copied, the raw data can be borrowed from the receive pool.
+			byte[] token = dataOut.getByteDataRaw();
+			this.sessionToken = token != null ? token.clone() : null;
+		}
+		if(dataOut != null && dataOut.isResponse()) {
+			if(!requests.complete(dataOut.retain()))
+				Client.logger.log(Level.WARNING, "Received a response without a waiting request! CorrelationID: " + dataOut.getCorrelationId());
+			return;
+		}
+		if(dataOut instanceof StreamChunk) {
+			if(!streams.handle((StreamChunk) dataOut)) disable(Level.ERROR, "Invalid stream chunk received!");
+			return;
+		}
+		PackageDispatcher dispatcher = this.dispatcher;
+		if(dispatcher == null) {
+			dispatch(info, dataOut);
+			if(dataOut != null) dataOut.release();
+		}else {
+			dispatcher.dispatch(packageId, () -> {
+				dispatch(info, dataOut);
+				if(dataOut != null) dataOut.release();
+			});
+		}
+	}
+	
+	/**
+	 * Handles all packages of a received batch in order.<br>
+	 * The packages are read from the raw data of the batch. Their payloads are taken from the receive buffer pool when one is set.
+	 * Lazy packages are views into the raw data of the batch and are not copied at all.
+	 * 
+	 * @return false when the batch is malformed or contains an unknown package.
+	 * */
+	private boolean expandBatch(BatchPackage batch) {
+		byte[] raw = batch.getByteDataRaw();
+		PackageManager packageManager = getPackageManager(batch.getChannelId());
+		BufferPool pool = this.receiveBufferPool;
+		int position = 0;
+		while(position < raw.length && this.state == State.Active) {
+			if(raw.length - position < DataPackage.IDLENGTH) return false;
+			int id = ((raw[position] & 0xFF) << 8) | (raw[position + 1] & 0xFF);
+			position += DataPackage.IDLENGTH;
+			PackageInfo info = packageManager.getPackageInfo(id);
+			if(info == null || Arrays.equals(info.getId(), BatchPackage.ID)) {
+				Client.logger.log(Level.ERROR, "Unknown package in batch! PackageID: " + id);
+				return false;
+			}
+			int length = info.getLength();
+			if(info.isDynamicLength()) {
+				if(raw.length - position < length) return false;
+				int width = length;
+				length = DataPackage.readLength(raw, position, width);
+				position += width;
+			}
+			if(length < 0 || length > raw.length - position) return false;
+			DataPackage dataOut;
+			if(info.isLazy()) {
+				// The view keeps pointing into the batch, so the batch must not go back to the pool.
+				batch.retain();
+				dataOut = new LazyPackage(info, raw, position, length);
+				position += length;
+			}else {
+				byte[] body = pool != null ? pool.acquire(length) : new byte[length];
+				System.arraycopy(raw, position, body, 0, length);
+				position += length;
+				dataOut = info.getConstruct().build(info.getId(), info.getLength(), info.isDynamicLength(), body);
+				if(pool != null) {
+					if(dataOut != null && dataOut.getByteDataRaw() == body) dataOut.borrowPayload(pool);
+					else pool.release(body);
+				}
+			}
+			if(dataOut != null && batch.getChannelId() != 0) dataOut.setChannelId(batch.getChannelId());
+			handlePackage(info, dataOut, id);
+		}
+		return true;
+	}
+	
+	private void handleDecodeError(FrameDecoder.Result result) {
+		switch(result) {
+		case NO_PACKAGE_MANAGER:
+			disable(Level.ERROR, "Package manager can not be null!");
+			break;
+		case UNKNOWN_PACKAGE:
+			byte[] data = decoder.getIdBytes();
+			Client.logger.log(Level.ERROR, "Unknown package recived by: " + socket.getInetAddress().toString());
+			Client.logger.log(Level.ERROR, "Unknown package id: " + DataPackage.getFromByte(data));
+			if(this.unknownPackageCallback != null) unknownPackageCallback.handle(data, this);
+			disable();
+			break;
+		case INVALID_FRAME:
+			Client.logger.log(Level.ERROR, "Invalid frame received!");
+			Client.logger.log(Level.ERROR, "PackageID: \t" + DataPackage.getFromByte(decoder.getInfo().getId()));
+			disable();
+			break;
+		case CHECKSUM_MISMATCH:
+			Client.logger.log(Level.ERROR, "Checksum missmatch! The frame was corrupted.");
+			Client.logger.log(Level.ERROR, "PackageID: \t" + DataPackage.getFromByte(decoder.getInfo().getId()));
+			disable();
+			break;
+		case SIZE_MISMATCH:
+			Client.logger.log(Level.ERROR, "Size missmatch!");
+			Client.logger.log(Level.ERROR, "PackageID: \t" + DataPackage.getFromByte(decoder.getInfo().getId()));
+			Client.logger.log(Level.ERROR, "Length: \t" + decoder.getLength());
+			disable();
+			break;
+		default:
+			break;
+		}
+	}	
+	/**
+	 * Starts the negotiation of the wire format features with the remote side.<br>
+	 * The offered features are set with <b>setOfferedFeatures()</b>. The handshake works in three steps:<br>
+	 * 1. This side sends an offer.<br>
+	 * 2. The remote side answers with the features both sides support and uses them for all frames it sends after the answer.<br>
+	 * 3. This side confirms the answer and uses the features for all frames it sends after the confirmation.<br>
+	 * <br>
+	 * Until the handshake is done all frames use the plain format, so packages can be sent at any time.<br>
+	 * <b>The remote side has to know the ProtocolHandshake package. Otherwise it will treat the offer as an unknown package.</b>
+	 * */
+	public void startHandshake() {
+		if(this.state != State.Active) return;
+		this.handshakeState = HANDSHAKE_OFFERED;
+		send(new ProtocolHandshake(WireFormat.VERSION, offeredFeatures & WireFormat.SUPPORTED_FEATURES, ProtocolHandshake.OFFER));
+	}
+	
+	/**
+	 * Handles a received handshake on the reading thread, so the decoder switches formats exactly between two frames.
+	 * */
+	private void handleHandshake(ProtocolHandshake handshake) {
+		short version = (short) Math.min(WireFormat.VERSION, handshake.getVersion());
+		int features = handshake.getFeatures() & offeredFeatures & WireFormat.getFeatures(version);
+		switch(handshake.getType()) {
+		case ProtocolHandshake.OFFER:
+			switchEncoder(new ProtocolHandshake(version, features, ProtocolHandshake.ANSWER), version, features);
+			break;
+		case ProtocolHandshake.ANSWER:
+			if(handshakeState != HANDSHAKE_OFFERED) {
+				disable(Level.ERROR, "Received a handshake answer without an offer!");
+				return;
+			}
+			decoder.setFeatures(features);
+			switchEncoder(new ProtocolHandshake(version, features, ProtocolHandshake.ACK), version, features);
+			break;
+		case ProtocolHandshake.ACK:
+			decoder.setFeatures(encoder.getFeatures());
+			handshakeState = HANDSHAKE_DONE;
+			break;
+		default:
+			disable(Level.ERROR, "Received an unknown handshake type: " + handshake.getType());
+			return;
+		}
+		Client.logger.log(Level.DEBUG, "Handshake(" + handshake.getType() + ") version: " + version + " features: " + features);
+	}
+	
+	/**
+	 * Sends the handshake and switches the encoder right after it, so no other package can be sent in between.
+	 * */
+	private void switchEncoder(ProtocolHandshake handshake, short version, int features) {
+		writeLock.lock();
+		try {
+			send(handshake);
+			encoder.setFeatures(features);
+			this.protocolVersion = version;
+			if(handshake.getType() == ProtocolHandshake.ACK) handshakeState = HANDSHAKE_DONE;
+		}finally {
+			writeLock.unlock();
+		}
+	}
+
+	
+	/**
+	 * Called by the selector thread when the channel is writable again.<br>
+	 * Writes all data that could not be written by <b>send()</b>.
+	 * */
+	void handleWrite() {
+		writeLock.lock();
+		try {
+			try {
+				while(!pendingWrites.isEmpty()) {
+					ByteBuffer buffer = pendingWrites.peek();
+					channel.write(buffer);
+					lastWriteNanos = System.nanoTime();
+					if(buffer.hasRemaining()) return;
+					pendingWrites.poll();
+				}
+			} catch (IOException e) {
+				Client.logger.log(Level.ERROR, e, e.getClass());
+				disable();
+				return;
+			}
+			selectorLoop.setWriteInterest(this, false);
+		}finally {
+			writeLock.unlock();
+		}
+		drainSendQueue();
+	}
+	
+	void attach(SelectorLoop selectorLoop, SelectionKey selectionKey) {
+		writeLock.lock();
+		try {
+			this.selectorLoop = selectorLoop;
+			this.selectionKey = selectionKey;
+			if(!pendingWrites.isEmpty()) selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}finally {
+			writeLock.unlock();
+		}
+		if(hasQueuedPackages()) wakeWriter();
+	}
+	
+	SelectionKey getSelectionKey() {
+		return selectionKey;
+	}
+	
+	SocketChannel getChannel() {
+		return channel;
+	}
+	
 	/**
 	 * Will send a data package to the client that is connected.<br>
+	 * The package is written into a buffer owned by the connection, so sending does not create any intermediate arrays.<br>
+	 * All packages buffered by <b>write()</b> are sent together with this package.<br>
+	 * Sending is thread safe. Packages sent from different threads will not be interleaved.
 	 * 
 	 * @param data
 	 * */
 	public void send(DataPackage data) {
-		if(out == null) return;
-		if(this.state == State.Active) {
+		write(data, true, 0);
+	}
+	
+	void send(LogicalChannel channel, DataPackage data) {
+		if(channel.closed) throw new IllegalStateException("Channel " + channel.getId() + " is closed!");
+		write(data, true, channel.getId());
+	}
+	
+	/**
+	 * Writes a data package into the outbound buffer of the connection without sending it right away.<br>
+	 * The buffered packages are sent together when:<br>
+	 * 1. The buffered bytes reach the flush threshold<br>
+	 * 2. The flush linger time has passed since the first package was buffered<br>
+	 * 3. <b>flush()</b> or <b>send()</b> is called<br>
+	 * <br>
+	 * This allows many small packages to be sent with one write to the socket.
+	 * 
+	 * @param data The package to buffer.
+	 * */
+	public void write(DataPackage data) {
+		write(data, false, 0);
+	}
+	
+	/**
+	 * Sends all packages that were buffered by <b>write()</b>.
+	 * */
+	public void flush() {
+		if(this.state != State.Active) return;
+		IOException error = null;
+		writeLock.lock();
+		try {
 			try {
-				out.write(data.pack());
-				out.flush();
-				Client.getLogger().log(Level.DEBUG, "SEND(" + data.getClass().getSimpleName() + "): " + data.toString());
+				flushSendBuffer();
 			} catch (IOException e) {
-				Client.logger.log(Level.ERROR, e, e.getClass());
+				error = e;
+			}
+		}finally {
+			writeLock.unlock();
+		}
+		if(error != null) {
+			Client.logger.log(Level.ERROR, error, error.getClass());
+			disable();
+		}
+	}
+	
+	/**
+	 * Called by the linger timer. The shared scheduler must not block on the socket,
+	 * so the flush is done by the writer of the connection.
+	 * */
+	private void requestFlush() {
+		flushRequested = true;
+		wakeWriter();
+	}
+	
+	private void flushIfRequested() {
+		if(!flushRequested) return;
+		flushRequested = false;
+		flush();
+	}
+	
+	private void write(DataPackage data, boolean flush, int channelId) {
+		if(this.state != State.Active) return;
+		if(channel == null && out == null) return;
+		IOException error = null;
+		writeLock.lock();
+		try {
+			try {
+				bufferPackage(data, channelId);
+				if(flush || sendBuffer.position() >= flushThreshold) {
+					flushSendBuffer();
+				}else if(lingerTask == null && flushLinger > 0) {
+					lingerTask = Scheduler.schedule(this::requestFlush, flushLinger, TimeUnit.MILLISECONDS);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}finally {
+			writeLock.unlock();
+		}
+		if(error != null) {
+			Client.logger.log(Level.ERROR, error, error.getClass());
+			disable();
+			return;
+		}
+		if(Client.getLogger().isLoggable(Level.DEBUG))
+			Client.getLogger().log(Level.DEBUG, "SEND(" + data.getClass().getSimpleName() + "): " + data.toString());
+	}
+	
+	/**
+	 * Writes the package into the send buffer. The buffer is flushed first when the package does not fit anymore.<br>
+	 * Has to be called while holding the write lock.
+	 * */
+	private void bufferPackage(DataPackage data, int channelId) throws IOException {
+		PackageManager packageManager = encoder.getFeatures() != 0 ? getPackageManager(channelId) : null;
+		PackageInfo info = packageManager != null ? packageManager.getPackageInfo(data.getId()) : null;
+		int size = encoder.prepare(data, info, channelId);
+		if(sendBuffer.remaining() < size) {
+			flushSendBuffer();
+			if(sendBuffer.capacity() < size) sendBuffer = ByteBuffer.allocate(size);
+		}
+		encoder.write(sendBuffer);
+	}
+	
+	/**
+	 * Returns true when the queued package is small enough to be sent in a batch.
+	 * */
+	private boolean isBatchable(SendQueue.Entry entry) {
+		return entry.size <= MAX_BATCHED_FRAME_SIZE && entry.data.getCorrelationId() == 0;
+	}
+	
+	/**
+	 * Writes the collected batch into the send buffer. A single package is written as it is.<br>
+	 * Has to be called while holding the write lock.
+	 * */
+	private void bufferBatch() throws IOException {
+		if(batch.isEmpty()) return;
+		try {
+			if(batch.size() == 1) {
+				bufferPackage(batch.get(0), batchChannel);
+				return;
+			}
+			int size = encoder.prepareBatch(batch, batchChannel);
+			if(sendBuffer.remaining() < size) {
+				flushSendBuffer();
+				if(sendBuffer.capacity() < size) sendBuffer = ByteBuffer.allocate(size);
+			}
+			encoder.write(sendBuffer);
+		}finally {
+			batch.clear();
+			batchBytes = 0;
+		}
+	}
+	
+	/**
+	 * Queues a data package to be sent by the writer of the connection and returns right away.<br>
+	 * The calling thread never blocks on the socket, even when the remote side is slow.<br>
+	 * <br>
+	 * For a blocking connection the writer is a thread owned by the connection, for a non blocking connection the selector thread.<br>
+	 * Queued packages are sent in order and written together, so the socket is flushed once per batch instead of once per package.<br>
+	 * <br>
+	 * When the queued bytes reach the high watermark the connection becomes unwritable and the writability callback is called.
+	 * Producers should back off until the connection is writable again.
+	 * 
+	 * @param data The package to send.
+	 * 
+	 * @return A future that is completed when the package was written to the socket.
+	 * The future is completed exceptionally when the send queue is full or the connection was closed before the package could be written.
+	 * */
+	public CompletableFuture<Void> sendAsync(DataPackage data) {
+		return sendAsync(defaultChannel, data);
+	}
+	
+	CompletableFuture<Void> sendAsync(LogicalChannel logicalChannel, DataPackage data) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		if(this.state != State.Active || (channel == null && out == null)) {
+			future.completeExceptionally(new IOException("Connection is not active!"));
+			return future;
+		}
+		if(logicalChannel.closed) {
+			future.completeExceptionally(new IOException("Channel " + logicalChannel.getId() + " is closed!"));
+			return future;
+		}
+		if(!logicalChannel.queue.offer(new SendQueue.Entry(data, future, logicalChannel.getId()))) {
+			future.completeExceptionally(new RejectedExecutionException("Send queue is full!"));
+			return future;
+		}
+		if(logicalChannel.queue.checkHighWatermark() && logicalChannel == defaultChannel) fireWritabilityChanged(false);
+		wakeWriter();
+		if(this.state != State.Active) failSendQueue();
+		return future;
+	}
+	
+	/**
+	 * Sends the data of the input stream as stream, so it can be larger then the max package size.<br>
+	 * The data is split into chunks that are sent one after another by a thread of its own. Other packages are sent in between the chunks.<br>
+	 * The remote side receives the stream with its stream callback. See {@link #setClientStreamCallback(ClientStreamCallback)}<br>
+	 * <br>
+	 * The input stream is closed when it was sent completely or the stream failed.
+	 * 
+	 * @param in The data to send.
+	 * 
+	 * @return A future that is completed when the whole stream was written to the socket.
+	 * The future is completed exceptionally when reading the input stream fails, the remote side cancels the stream or the connection is closed.
+	 * */
+	public CompletableFuture<Void> sendStream(InputStream in) {
+		if(this.state != State.Active) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException("Connection is not active!"));
+			return future;
+		}
+		return streams.send(in);
+	}
+	
+	/**
+	 * Sends the data of the channel as stream. See {@link #sendStream(InputStream)}
+	 * */
+	public CompletableFuture<Void> sendStream(ReadableByteChannel channel) {
+		return sendStream(Channels.newInputStream(channel));
+	}
+	
+	/**
+	 * Sends a package as request and returns a future for the response.<br>
+	 * The remote side answers the request with <b>respond()</b>. Any number of requests can wait for their responses at the same time.<br>
+	 * <br>
+	 * Requests need the <b>CORRELATION</b> feature to be negotiated with a handshake. See {@link #startHandshake()}<br>
+	 * The response is not passed to the receive callbacks or the package callback, it only completes the future.<br>
+	 * The future is completed on the reading thread of the connection, so dependent actions should not block.
+	 * 
+	 * @param data The request to send.
+	 * @param timeout The time to wait for the response.
+	 * 
+	 * @return A future that is completed with the response.
+	 * The future is completed exceptionally with a TimeoutException when no response arrived in time,
+	 * or when the request could not be sent or the connection was closed.
+	 * */
+	public CompletableFuture<DataPackage> request(DataPackage data, Duration timeout) {
+		if((getNegotiatedFeatures() & WireFormat.CORRELATION) == 0) {
+			CompletableFuture<DataPackage> future = new CompletableFuture<>();
+			future.completeExceptionally(new IllegalStateException("Requests need the CORRELATION feature to be negotiated!"));
+			return future;
+		}
+		RequestTracker.Pending request = requests.register(timeout.toNanos());
+		data.setCorrelationId(request.id);
+		data.setResponse(false);
+		sendAsync(data).whenComplete((result, error) -> {
+			if(error != null) requests.fail(request.id, error);
+		});
+		return request.future;
+	}
+	
+	/**
+	 * Sends the response to a received request.
+	 * 
+	 * @param request The received request.
+	 * @param response The response to send.
+	 * 
+	 * @return A future that is completed when the response was written to the socket.
+	 * 
+	 * @throws IllegalArgumentException When the package to answer is not a request.
+	 * */
+	public CompletableFuture<Void> respond(DataPackage request, DataPackage response) {
+		if(request.getCorrelationId() == 0 || request.isResponse())
+			throw new IllegalArgumentException("Only requests can be answered!");
+		response.setCorrelationId(request.getCorrelationId());
+		response.setResponse(true);
+		return sendAsync(response);
+	}
+	
+	/**
+	 * Returns the number of requests that are waiting for their response.
+	 * */
+	public int getPendingRequestCount() {
+		return requests.getPendingCount();
+	}
+	
+	/**
+	 * Makes the writer drain the send queue.<br>
+	 * For a non blocking connection the drain runs as task on the selector thread. This also works when the package was queued
+	 * by a callback on the selector thread itself, since the selector runs its tasks before it blocks again.
+	 * */
+	private void wakeWriter() {
+		if(channel != null) {
+			SelectorLoop loop = this.selectorLoop;
+			if(loop != null && drainScheduled.compareAndSet(false, true)) {
+				loop.execute(() -> {
+					drainScheduled.set(false);
+					drainSendQueue();
+					flushIfRequested();
+				});
+			}
+			return;
+		}
+		Thread writer = this.writerThread;
+		if(writer == null) {
+			synchronized (sendQueue) {
+				if(this.writerThread == null) {
+					this.writerThread = Client.getThreadFactory().newThread(this::runWriter);
+					this.writerThread.start();
+				}
+				writer = this.writerThread;
+			}
+		}
+		LockSupport.unpark(writer);
+	}
+	
+	private void runWriter() {
+		while(this.state == State.Active) {
+			drainSendQueue();
+			flushIfRequested();
+			if(!hasQueuedPackages() && !flushRequested && this.state == State.Active) LockSupport.park(this);
+		}
+		failSendQueue();
+	}
+	
+	/**
+	 * Writes all queued packages and flushes them together.<br>
+	 * A non blocking connection stops draining while the channel still has unwritten data, so the queue keeps applying backpressure.<br>
+	 * Must only be called by the writer of the connection.
+	 * */
+	private void drainSendQueue() {
+		while(hasQueuedPackages() && this.state == State.Active) {
+			IOException error = null;
+			writeLock.lock();
+			try {
+				if(!pendingWrites.isEmpty()) return;
+				try {
+					SendQueue.Entry entry;
+					while(drained.size() < MAX_DRAIN && (entry = pollNext()) != null) {
+						drained.add(entry);
+						if(sendBatching && isBatchable(entry)) {
+							if(!batch.isEmpty() && (entry.channel != batchChannel || batch.size() == MAX_BATCH_PACKAGES
+									|| batchBytes + entry.size > Client.getMaxPackageSize())) bufferBatch();
+							batch.add(entry.data);
+							batchChannel = entry.channel;
+							batchBytes += entry.size;
+						}else {
+							bufferBatch();
+							bufferPackage(entry.data, entry.channel);
+						}
+					}
+					bufferBatch();
+					flushSendBuffer();
+				} catch (IOException e) {
+					error = e;
+				}
+			}finally {
+				writeLock.unlock();
+			}
+			SendQueue.Entry entry;
+			while((entry = drained.poll()) != null) {
+				if(error == null) entry.future.complete(null);
+				else entry.future.completeExceptionally(error);
+			}
+			if(sendQueue.checkLowWatermark()) fireWritabilityChanged(true);
+			for(LogicalChannel logicalChannel : channels) logicalChannel.queue.checkLowWatermark();
+			if(error != null) {
+				Client.logger.log(Level.ERROR, error, error.getClass());
 				disable();
+				return;
 			}
 		}
 	}
 	
+	/**
+	 * Takes the next package from the send queues of the channels by deficit round robin.<br>
+	 * Every time a channel gets its turn its deficit grows by its weight times <b>CHANNEL_QUANTUM</b> bytes.
+	 * The channel may send packages as long as they fit into its deficit, then the next channel gets its turn.<br>
+	 * Must only be called by the writer.
+	 * 
+	 * @return The next package or null when all queues are empty.
+	 * */
+	private SendQueue.Entry pollNext() {
+		LogicalChannel[] channels = this.channels;
+		if(channels.length == 1) return sendQueue.poll();
+		if(!hasQueuedPackages()) return null;
+		while(true) {
+			if(nextChannel >= channels.length) nextChannel = 0;
+			LogicalChannel logicalChannel = channels[nextChannel];
+			SendQueue.Entry entry = logicalChannel.queue.peek();
+			if(entry == null) {
+				logicalChannel.deficit = 0;
+				logicalChannel.scheduled = false;
+				nextChannel++;
+				continue;
+			}
+			if(!logicalChannel.scheduled) {
+				logicalChannel.deficit += logicalChannel.getWeight() * CHANNEL_QUANTUM;
+				logicalChannel.scheduled = true;
+			}
+			if(entry.size <= logicalChannel.deficit) {
+				logicalChannel.deficit -= entry.size;
+				return logicalChannel.queue.poll();
+			}
+			logicalChannel.scheduled = false;
+			nextChannel++;
+		}
+	}
+	
+	private boolean hasQueuedPackages() {
+		for(LogicalChannel logicalChannel : channels) {
+			if(!logicalChannel.queue.isEmpty()) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Blocks until the default send queue has room for another package again.<br>
+	 * Used by senders that have to retry a package that was rejected because the queue was full.
+	 * */
+	void awaitSendQueueSpace() throws InterruptedException {
+		sendQueue.awaitSpace();
+	}
+	
+	/**
+	 * Fails all queued packages after the connection was closed.
+	 * */
+	private void failSendQueue() {
+		for(LogicalChannel logicalChannel : channels) failSendQueue(logicalChannel.queue);
+	}
+	
+	private void failSendQueue(SendQueue queue) {
+		ReplayBuffer replay = this.replayBuffer;
+		SendQueue.Entry entry;
+		while((entry = queue.poll()) != null) {
+			if(replay != null && entry.channel == 0 && entry.data.getCorrelationId() == 0 && replay.offer(entry.data, entry.future)) continue;
+			entry.future.completeExceptionally(new IOException("Connection was closed before the package was sent!"));
+		}
+	}
+	
+	private void fireWritabilityChanged(boolean writable) {
+		if(this.clientWritabilityCallback != null) clientWritabilityCallback.call(this, writable);
+	}
+	
+	/**
+	 * Writes the content of the send buffer to the socket and clears it.<br>
+	 * Has to be called while holding the write lock.
+	 * */
+	private void flushSendBuffer() throws IOException {
+		if(lingerTask != null) {
+			lingerTask.cancel(false);
+			lingerTask = null;
+		}
+		if(sendBuffer.position() == 0) return;
+		sendBuffer.flip();
+		try {
+			if(channel != null) {
+				writeNonBlocking(sendBuffer);
+			}else {
+				out.write(sendBuffer.array(), 0, sendBuffer.limit());
+				out.flush();
+			}
+			lastWriteNanos = System.nanoTime();
+		}finally {
+			sendBuffer.clear();
+		}
+	}
+	
+	/**
+	 * Writes as much of the buffer as the channel accepts.<br>
+	 * The rest is copied and written by the selector thread as soon as the channel is writable.<br>
+	 * Has to be called while holding the write lock.
+	 * */
+	private void writeNonBlocking(ByteBuffer buffer) throws IOException {
+		if(pendingWrites.isEmpty()) channel.write(buffer);
+		if(buffer.hasRemaining()) {
+			ByteBuffer rest = ByteBuffer.allocate(buffer.remaining());
+			rest.put(buffer);
+			rest.flip();
+			pendingWrites.add(rest);
+			if(pendingWrites.size() == 1 && selectorLoop != null) selectorLoop.setWriteInterest(this, true);
+		}
+	}
+	
 	/**
 	 * Disable function that can log an error if the connection had to be disabled in a catch block.
 	 * */
@@ -188,7 +1021,9 @@ public class ClientConnection{
 	public void disable() {
 		Client.logger.log(Level.INFO, "Disabling connection for: " + socket.getInetAddress().getHostAddress());
 		this.state = State.Dead;
+		if(selectionKey != null) selectionKey.cancel();
 		try {
+			if(channel != null) this.channel.close();
 			if(socket != null) this.socket.close();
 			if(reader != null) this.reader.close();
 			if(out != null) this.out.close();
@@ -196,6 +1031,12 @@ public class ClientConnection{
 			Client.logger.log(Level.ERROR, e, e.getClass());
 		}
 		
+		Thread writer = this.writerThread;
+		if(writer != null) LockSupport.unpark(writer);
+		else failSendQueue();
+		streams.close();
+		requests.close();
+		
 		if(this.clientDisconnectCallback != null) clientDisconnectCallback.call(this);
 		
 	}
@@ -210,14 +1051,143 @@ public class ClientConnection{
 	public PackageManager getPackageManager() {
 		return packageManager;
 	}
+	
+	/**
+	 * Returns the package manager for packages received on the given channel.
+	 * */
+	PackageManager getPackageManager(int channelId) {
+		if(channelId != 0) {
+			LogicalChannel logicalChannel = getLogicalChannel(channelId);
+			if(logicalChannel != null && logicalChannel.getPackageManager() != null) return logicalChannel.getPackageManager();
+		}
+		return packageManager;
+	}
+	
+	/**
+	 * Opens a logical channel on this connection. See {@link LogicalChannel}
+	 * 
+	 * @param id The id of the channel. Has to be between 1 and 255.
+	 * @param weight The share of the bandwidth of the channel. Has to be at least 1.
+	 * 
+	 * @return The opened channel.
+	 * 
+	 * @throws IllegalArgumentException When the id is invalid or the channel is already open.
+	 * */
+	public LogicalChannel openChannel(int id, int weight) {
+		if(id < 1 || id >= WireFormat.MAX_CHANNELS)
+			throw new IllegalArgumentException("The channel id has to be between 1 and " + (WireFormat.MAX_CHANNELS - 1) + "!");
+		synchronized (defaultChannel) {
+			if(getLogicalChannel(id) != null)
+				throw new IllegalArgumentException("Channel " + id + " is already open!");
+			LogicalChannel logicalChannel = new LogicalChannel(this, id, weight,
+					new SendQueue(sendQueue.getCapacity(), sendQueue.getLowWatermark(), sendQueue.getHighWatermark()));
+			LogicalChannel[] channels = Arrays.copyOf(this.channels, this.channels.length + 1);
+			channels[channels.length - 1] = logicalChannel;
+			this.channels = channels;
+			return logicalChannel;
+		}
+	}
+	
+	/**
+	 * Closes a logical channel. Packages still queued on the channel are failed.
+	 * 
+	 * @param id The id of the channel.
+	 * */
+	public void closeChannel(int id) {
+		LogicalChannel logicalChannel;
+		synchronized (defaultChannel) {
+			logicalChannel = getLogicalChannel(id);
+			if(logicalChannel == null || logicalChannel == defaultChannel) return;
+			LogicalChannel[] channels = new LogicalChannel[this.channels.length - 1];
+			int i = 0;
+			for(LogicalChannel c : this.channels) {
+				if(c != logicalChannel) channels[i++] = c;
+			}
+			logicalChannel.closed = true;
+			this.channels = channels;
+		}
+		failSendQueue(logicalChannel.queue);
+	}
+	
+	/**
+	 * Returns the open logical channel with the given id or null. The default channel has the id 0.
+	 * */
+	public LogicalChannel getLogicalChannel(int id) {
+		for(LogicalChannel logicalChannel : channels) {
+			if(logicalChannel.getId() == id) return logicalChannel;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the default channel. Packages sent with the functions of the connection are sent on this channel.
+	 * */
+	public LogicalChannel getDefaultChannel() {
+		return defaultChannel;
+	}
 
 	public State getState() {
 		return state;
 	}
+	
+	/**
+	 * Returns true while the connection is open.
+	 * */
+	public boolean isActive() {
+		return state == State.Active;
+	}
 
 	public void setState(State state) {
 		this.state = state;
 	}
+	
+	/**
+	 * Returns how many nanoseconds ago the last bytes were received.
+	 * */
+	public long getReadIdleNanos() {
+		return System.nanoTime() - lastReadNanos;
+	}
+	
+	/**
+	 * Returns how many nanoseconds ago the last bytes were written to the socket.
+	 * */
+	public long getWriteIdleNanos() {
+		return System.nanoTime() - lastWriteNanos;
+	}
+	
+	/**
+	 * Returns the smoothed round trip time in nanoseconds measured by the heartbeats or -1 when it was not measured yet.<br>
+	 * The round trip time is only measured when <b>CORRELATION</b> was negotiated. See {@link HeartbeatManager}
+	 * */
+	public long getRoundTripNanos() {
+		return roundTripNanos;
+	}
+	
+	public ReplayBuffer getReplayBuffer() {
+		return replayBuffer;
+	}
+	
+	/**
+	 * Hands the packages that are still queued when the connection is closed to the replay buffer instead of failing them.<br>
+	 * See {@link ReplayBuffer}
+	 * 
+	 * @param replayBuffer The buffer for unsent packages. Can be null.
+	 * */
+	public void setReplayBuffer(ReplayBuffer replayBuffer) {
+		this.replayBuffer = replayBuffer;
+	}
+	
+	/**
+	 * Returns the session token of the last received <b>ReconnectPackage</b> or null when none was received.<br>
+	 * A client sends the token in a <b>ReconnectPackage</b> after reconnecting, so the server can resume the session.
+	 * */
+	public byte[] getSessionToken() {
+		return sessionToken;
+	}
+	
+	public void setSessionToken(byte[] sessionToken) {
+		this.sessionToken = sessionToken;
+	}
 
 	public Socket getSocket() {
 		return socket;
@@ -255,6 +1225,240 @@ public class ClientConnection{
 		this.clientTimeOutCallback = timeout;
 	}
 	
+	public int getFlushThreshold() {
+		return flushThreshold;
+	}
+
+	/**
+	 * Sets the number of buffered bytes after which packages buffered by <b>write()</b> are sent right away.
+	 * 
+	 * @param flushThreshold The threshold in bytes.
+	 * */
+	public void setFlushThreshold(int flushThreshold) {
+		this.flushThreshold = flushThreshold;
+	}
+
+	public long getFlushLinger() {
+		return flushLinger;
+	}
+
+	/**
+	 * Sets the time in milliseconds packages buffered by <b>write()</b> wait for more packages before they are sent.<br>
+	 * When set to 0 buffered packages are only sent when the flush threshold is reached or <b>flush()</b> is called.<br>
+	 * The linger flush is done by the writer of the connection, for a blocking connection a writer thread is started for it.
+	 * 
+	 * @param flushLinger The linger time in milliseconds.
+	 * */
+	public void setFlushLinger(long flushLinger) {
+		this.flushLinger = flushLinger;
+	}
+	
+	/**
+	 * Hands all received packages to the given executor instead of handling them on the reading thread.<br>
+	 * The reading thread then never waits for a callback, so a slow callback does not stop the connection from reading.<br>
+	 * <br>
+	 * The order of the packages is kept as defined by <b>ordering</b>:<br>
+	 * {@link DispatchOrdering#PER_CONNECTION} handles all packages of this connection one after another.<br>
+	 * {@link DispatchOrdering#PER_PACKAGE} only keeps the order of packages with the same id, different packages are handled in parallel.<br>
+	 * <br>
+	 * Set the executor to null to handle packages on the reading thread again.
+	 * 
+	 * @param executor The executor that runs the callbacks. Can be null.
+	 * @param ordering The ordering that is kept for the received packages.
+	 * */
+	public void setDispatchExecutor(Executor executor, DispatchOrdering ordering) {
+		this.dispatcher = executor != null ? new PackageDispatcher(executor, ordering) : null;
+	}
+	
+	public Executor getDispatchExecutor() {
+		PackageDispatcher dispatcher = this.dispatcher;
+		return dispatcher != null ? dispatcher.getExecutor() : null;
+	}
+	
+	/**
+	 * Sets the wire format features this connection offers or accepts in a handshake.<br>
+	 * See {@link WireFormat} for the available features and {@link #startHandshake()} for the handshake.
+	 * 
+	 * @param features The features as bit mask.
+	 * */
+	public void setOfferedFeatures(int features) {
+		this.offeredFeatures = features;
+	}
+	
+	public int getOfferedFeatures() {
+		return offeredFeatures;
+	}
+	
+	/**
+	 * Returns the features used for the frames sent by this connection.<br>
+	 * Returns 0 until the handshake is done.
+	 * */
+	public int getNegotiatedFeatures() {
+		writeLock.lock();
+		try {
+			return encoder.getFeatures();
+		}finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Returns the protocol version agreed on in the handshake or 0 when no handshake was done.
+	 * */
+	public short getProtocolVersion() {
+		return protocolVersion;
+	}
+	
+	/**
+	 * Returns true when the handshake with the remote side is done.
+	 * */
+	public boolean isHandshakeDone() {
+		return handshakeState == HANDSHAKE_DONE;
+	}
+	
+	/**
+	 * Sets the payload size in bytes from which on compressible packages are compressed.<br>
+	 * Smaller payloads are always sent uncompressed.
+	 * 
+	 * @param threshold The compression threshold in bytes.
+	 * */
+	public void setCompressionThreshold(int threshold) {
+		writeLock.lock();
+		try {
+			encoder.setCompressionThreshold(threshold);
+		}finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Sets the callback for streams received from the remote side.<br>
+	 * Streams received while no callback is set are canceled.
+	 * */
+	public void setClientStreamCallback(ClientStreamCallback clientStreamCallback) {
+		streams.setStreamCallback(clientStreamCallback);
+	}
+	
+	public ClientStreamCallback getClientStreamCallback() {
+		return streams.getStreamCallback();
+	}
+	
+	/**
+	 * Sets the max number of data bytes per chunk of outgoing streams.<br>
+	 * The chunk size is limited by the max package size. Smaller chunks keep other packages from waiting long behind a stream.
+	 * */
+	public void setStreamChunkSize(int chunkSize) {
+		streams.setChunkSize(chunkSize);
+	}
+	
+	public int getStreamChunkSize() {
+		return streams.getChunkSize();
+	}
+	
+	/**
+	 * Sets the number of chunks an outgoing stream may send before the remote side has read them.
+	 * */
+	public void setStreamWindow(int window) {
+		streams.setWindow(window);
+	}
+	
+	public int getStreamWindow() {
+		return streams.getWindow();
+	}
+	
+	public BufferPool getReceiveBufferPool() {
+		return receiveBufferPool;
+	}
+	
+	/**
+	 * Sets a pool the payloads of received packages are taken from.<br>
+	 * Every package is released back to the pool after all callbacks have returned, so packages that are only handled inside the callbacks do not create garbage.<br>
+	 * <b>Callbacks that keep a package or its raw data after returning have to call <i>retain()</i> on the package.</b>
+	 * <br><br>
+	 * The same pool can be shared by many connections. Set to null to disable pooling.
+	 * 
+	 * @param receiveBufferPool The pool for received payloads.
+	 * */
+	public void setReceiveBufferPool(BufferPool receiveBufferPool) {
+		this.receiveBufferPool = receiveBufferPool;
+	}
+	
+	/**
+	 * Returns false while the queued bytes of <b>sendAsync()</b> are above the high watermark.
+	 * */
+	public boolean isWritable() {
+		return sendQueue.isWritable();
+	}
+	
+	/**
+	 * Returns the number of bytes queued by <b>sendAsync()</b> that have not been written yet.
+	 * */
+	public long getQueuedBytes() {
+		return sendQueue.getQueuedBytes();
+	}
+	
+	/**
+	 * Sets the max number of packages that can be queued by <b>sendAsync()</b>.<br>
+	 * Packages sent while the queue is full are rejected.
+	 * 
+	 * @param capacity The capacity of the send queue. Has to be larger then 0.
+	 * */
+	public void setSendQueueCapacity(int capacity) {
+		sendQueue.setCapacity(capacity);
+	}
+	
+	public int getSendQueueCapacity() {
+		return sendQueue.getCapacity();
+	}
+	
+	/**
+	 * Enables sending small packages queued by <b>sendAsync()</b> in batches.<br>
+	 * Packages of up to 256 bytes that are written together are sent as one <b>BatchPackage</b> frame instead of one frame each.
+	 * The remote side expands the batch and handles every package as if it was received on its own.<br>
+	 * <br>
+	 * <b>Only enable batching when the remote side knows the BatchPackage.</b>
+	 * 
+	 * @param sendBatching true to send small packages in batches.
+	 * */
+	public void setSendBatching(boolean sendBatching) {
+		this.sendBatching = sendBatching;
+	}
+	
+	public boolean isSendBatching() {
+		return sendBatching;
+	}
+	
+	/**
+	 * Sets the watermarks of the send queue in bytes.<br>
+	 * The connection becomes unwritable when the queued bytes reach the high watermark and writable again when they drop to the low watermark.
+	 * 
+	 * @param low The low watermark.
+	 * @param high The high watermark.
+	 * 
+	 * @throws IllegalArgumentException When not <b>0 <= low <= high</b>
+	 * */
+	public void setWriteBufferWatermarks(long low, long high) {
+		sendQueue.setWatermarks(low, high);
+	}
+	
+	public long getLowWatermark() {
+		return sendQueue.getLowWatermark();
+	}
+	
+	public long getHighWatermark() {
+		return sendQueue.getHighWatermark();
+	}
+	
+	/**
+	 * Sets a callback function that is invoked when the connection becomes writable or unwritable.<br>
+	 * See {@link ClientWritabilityCallback}
+	 * 
+	 * @param clientWritabilityCallback The callback that is invoked when the writability changes.
+	 * */
+	public void setClientWritabilityCallback(ClientWritabilityCallback clientWritabilityCallback) {
+		this.clientWritabilityCallback = clientWritabilityCallback;
+	}
+	
 	/**
 	 * Sets the package manager for the client connection.<br>
 	 * 
@@ -0,0 +1,16 @@
+package com.client;
+
+@FunctionalInterface
+public interface ClientStreamCallback {
+
+	/**
+	 * Callback function for streams opened by the remote side with <b>sendStream()</b>.<br>
+	 * The callback is executed on a thread of its own, so it can read the stream until it ends.<br>
+	 * The stream should be closed when it is not read to the end, otherwise the remote side keeps waiting for it to be read.
+	 * 
+	 * @param con The connection the stream was received on.
+	 * @param stream The received stream.
+	 * */
+	public void call(ClientConnection con, IncomingStream stream);
+	
+}
@@ -0,0 +1,17 @@
+package com.client;
+
+@FunctionalInterface
+public interface ClientWritabilityCallback {
+
+	/**
+	 * Callback function that informs about changes of the writability of a connection.<br>
+	 * A connection becomes unwritable when the bytes waiting in its send queue reach the high watermark
+	 * and becomes writable again when they drop to the low watermark.<br>
+	 * Producers should stop calling <b>sendAsync()</b> while the connection is not writable.
+	 * 
+	 * @param con The connection whose writability changed.
+	 * @param writable The new writability of the connection.
+	 * */
+	public void call(ClientConnection con, boolean writable);
+	
+}
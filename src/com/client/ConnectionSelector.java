@@ -0,0 +1,74 @@
+package com.client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.client.main.Client;
+import com.logger.Level;
+
+public class ConnectionSelector {
+
+	private final SelectorLoop[] loops;
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Creates a connection selector that is driven by a single selector thread.<br>
+	 *
+	 * @throws IOException When the underlying selector could not be opened.
+	 * */
+	public ConnectionSelector() throws IOException {
+		this(1);
+	}
+
+	/**
+	 * Creates a connection selector that is driven by <b>threads</b> selector threads.<br>
+	 * Connections that are registered to the selector are spread over the threads in a round robin fashion.<br>
+	 * Every thread handles the reading and writing for all of its connections, so no connection needs a thread of its own.<br>
+	 * <br>
+	 * The selector threads are started right away and keep running until <b>shutdown()</b> is called.
+	 *
+	 * @param threads Number of selector threads. Has to be at least 1.
+	 *
+	 * @throws IllegalArgumentException When <b>threads < 1</b>
+	 * @throws IOException When the underlying selector could not be opened.
+	 * */
+	public ConnectionSelector(int threads) throws IOException {
+		if(threads < 1)
+			throw new IllegalArgumentException("A connection selector needs at least one thread!");
+		this.loops = new SelectorLoop[threads];
+		for(int i = 0; i < threads; i++) {
+			this.loops[i] = new SelectorLoop("ConnectionSelector-" + i);
+		}
+		for(SelectorLoop loop : loops) loop.start();
+	}
+
+	/**
+	 * Registers the connection with one of the selector threads.
+	 * */
+	void register(ClientConnection connection) {
+		int index = Math.floorMod(next.getAndIncrement(), loops.length);
+		loops[index].register(connection);
+	}
+
+	/**
+	 * Stops all selector threads.<br>
+	 * Connections that are still registered will not be read or written anymore and should be disabled before calling this function.
+	 * */
+	public void shutdown() {
+		for(SelectorLoop loop : loops) {
+			try {
+				loop.shutdown();
+			} catch (InterruptedException e) {
+				Client.getLogger().log(Level.WARNING, "Connection selector was interuped while stopping!");
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of selector threads.
+	 * */
+	public int getThreadCount() {
+		return loops.length;
+	}
+
+}
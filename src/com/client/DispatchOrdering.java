@@ -0,0 +1,11 @@
+package com.client;
+
+/**
+ * Defines which received packages keep their order when they are dispatched to an executor.
+ * */
+public enum DispatchOrdering {
+	/** All packages of a connection are handled one after another in the order they were received. */
+	PER_CONNECTION,
+	/** Packages with the same id are handled in order. Packages with different ids can be handled in parallel. */
+	PER_PACKAGE
+}
@@ -0,0 +1,379 @@
+package com.client;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.client.main.Client;
+import com.client.packageing.BufferPool;
+import com.client.packageing.DataPackage;
+import com.client.packageing.LazyPackage;
+import com.client.packageing.PackageInfo;
+import com.client.packageing.PackageManager;
+
+/**
+ * Incremental decoder for the package frames of a connection.<br>
+ * <br>
+ * A frame is read in up to six steps: the package id, the flag byte (only when features were negotiated),
+ * the channel id (only for frames of logical channels), the correlation id (only for requests and responses), the length prefix (only for dynamic length packages) and the body.<br>
+ * The package is looked up in the package manager of its channel once the id and the channel are known.<br>
+ * The length prefix is either <b>PACK_LENGTH</b> bytes wide or a variable length integer when <b>VARINT_LENGTH</b> was negotiated.<br>
+ * The decoder keeps the state of a partially received frame between calls, so the bytes of a frame can arrive in any number of reads.<br>
+ * A package is only built once all bytes of the frame have been received.<br>
+ * <br>
+ * When the connection has a receive buffer pool the body arrays are taken from the pool and the built package borrows its raw data from it.<br>
+ * Compressed payloads are inflated with a reused inflater before the package is built.<br>
+ * With <b>CHECKSUM</b> the checksum is updated with every consumed part of the frame, so the received bytes are not read a second time.
+ * Frames with a wrong checksum are rejected before the package is built.
+ * Packages that are marked as lazy are not built at all, the decoder hands out a {@link LazyPackage} over the body instead.
+ * */
+class FrameDecoder {
+
+	enum Result {
+		/** More bytes are needed to complete the frame. */
+		INCOMPLETE,
+		/** A frame was completed and can be retrieved with <b>getPackage()</b>. */
+		FRAME,
+		/** The read package id is not known by the package manager. */
+		UNKNOWN_PACKAGE,
+		/** The length prefix of a dynamic package is negative or larger then the max package size. */
+		SIZE_MISMATCH,
+		/** No package manager was set. */
+		NO_PACKAGE_MANAGER,
+		/** The frame has unknown flags or its payload could not be decompressed. */
+		INVALID_FRAME,
+		/** The checksum of the frame does not match the received bytes. */
+		CHECKSUM_MISMATCH
+	}
+
+	private enum Step {
+		ID,
+		FLAGS,
+		CHANNEL,
+		CORRELATION,
+		LENGTH,
+		BODY,
+		CHECKSUM
+	}
+
+	private final ClientConnection connection;
+
+	private Step step = Step.ID;
+	private int read = 0;
+	private int id = 0;
+	private int length = 0;
+	private PackageInfo info = null;
+	private byte[] body = null;
+	private DataPackage dataPackage = null;
+	private int features = 0;
+	private byte flags = 0;
+	private int channel = 0;
+	private int correlationId = 0;
+	private Inflater inflater = null;
+	private CRC32C checksum = null;
+	private int checksumMark = 0;
+	private int expectedChecksum = 0;
+
+	FrameDecoder(ClientConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Consumes bytes from the buffer until a frame is complete or the buffer is empty.<br>
+	 * The buffer has to be in read mode. Consumed bytes are not given back to the buffer.
+	 * */
+	Result decode(ByteBuffer in) {
+		checksumMark = in.position();
+		Result result = decodeFrame(in);
+		if(result == Result.INCOMPLETE) updateChecksum(in);
+		return result;
+	}
+
+	private Result decodeFrame(ByteBuffer in) {
+		while(true) {
+			switch(step) {
+			case ID:
+				if(read == 0) {
+					id = 0;
+					if(checksum != null) checksum.reset();
+					checksumMark = in.position();
+				}
+				while(read < DataPackage.IDLENGTH) {
+					if(!in.hasRemaining()) return Result.INCOMPLETE;
+					id = (id << 8) | (in.get() & 0xFF);
+					read++;
+				}
+				read = 0;
+				flags = 0;
+				channel = 0;
+				correlationId = 0;
+				if(WireFormat.hasFlags(features)) {
+					step = Step.FLAGS;
+					break;
+				}
+				Result resolved = resolve();
+				if(resolved != null) return resolved;
+				break;
+			case FLAGS:
+				if(!in.hasRemaining()) return Result.INCOMPLETE;
+				flags = in.get();
+				if((flags & ~WireFormat.KNOWN_FLAGS) != 0) return Result.INVALID_FRAME;
+				if((flags & WireFormat.FLAG_CHANNEL) != 0 && (features & WireFormat.CHANNELS) == 0) return Result.INVALID_FRAME;
+				if((flags & (WireFormat.FLAG_REQUEST | WireFormat.FLAG_RESPONSE)) != 0) {
+					if((features & WireFormat.CORRELATION) == 0) return Result.INVALID_FRAME;
+					if((flags & WireFormat.FLAG_REQUEST) != 0 && (flags & WireFormat.FLAG_RESPONSE) != 0) return Result.INVALID_FRAME;
+				}
+				if((flags & WireFormat.FLAG_CHANNEL) != 0) {
+					step = Step.CHANNEL;
+					break;
+				}
+				resolved = startCorrelation();
+				if(resolved != null) return resolved;
+				break;
+			case CHANNEL:
+				if(!in.hasRemaining()) return Result.INCOMPLETE;
+				channel = in.get() & 0xFF;
+				resolved = startCorrelation();
+				if(resolved != null) return resolved;
+				break;
+			case CORRELATION:
+				while(read < Integer.BYTES) {
+					if(!in.hasRemaining()) return Result.INCOMPLETE;
+					correlationId = (correlationId << 8) | (in.get() & 0xFF);
+					read++;
+				}
+				resolved = resolve();
+				if(resolved != null) return resolved;
+				break;
+			case LENGTH:
+				if((features & WireFormat.VARINT_LENGTH) != 0) {
+					while(true) {
+						if(!in.hasRemaining()) return Result.INCOMPLETE;
+						byte b = in.get();
+						length |= (b & 0x7F) << (7 * read);
+						read++;
+						if(b >= 0) break;
+						if(read == WireFormat.MAX_VARINT_BYTES) return Result.SIZE_MISMATCH;
+					}
+					if(length < 0 || length > Client.getMaxPackageSize()) return Result.SIZE_MISMATCH;
+					startBody();
+					break;
+				}
+				int width = info.getLength();
+				int used = width >= Integer.BYTES ? Integer.BYTES : (width >= Short.BYTES ? Short.BYTES : 1);
+				while(read < width) {
+					if(!in.hasRemaining()) return Result.INCOMPLETE;
+					byte b = in.get();
+					if(read < used) length = (length << 8) | (b & 0xFF);
+					read++;
+				}
+				if(used == Short.BYTES) length = (short)length;
+				else if(used == 1) length = (byte)length;
+				if(length < 0 || length > Client.getMaxPackageSize()) return Result.SIZE_MISMATCH;
+				startBody();
+				break;
+			case BODY:
+				int count = Math.min(in.remaining(), length - read);
+				in.get(body, read, count);
+				read += count;
+				if(read < length) return Result.INCOMPLETE;
+				if((features & WireFormat.CHECKSUM) != 0) {
+					updateChecksum(in);
+					step = Step.CHECKSUM;
+					read = 0;
+					expectedChecksum = 0;
+					break;
+				}
+				return finish();
+			case CHECKSUM:
+				while(read < Integer.BYTES) {
+					if(!in.hasRemaining()) {
+						checksumMark = in.position();
+						return Result.INCOMPLETE;
+					}
+					expectedChecksum = (expectedChecksum << 8) | (in.get() & 0xFF);
+					read++;
+				}
+				checksumMark = in.position();
+				if((int) checksum.getValue() != expectedChecksum) {
+					step = Step.ID;
+					read = 0;
+					BufferPool bodyPool = connection.getReceiveBufferPool();
+					if(bodyPool != null) bodyPool.release(body);
+					body = null;
+					return Result.CHECKSUM_MISMATCH;
+				}
+				return finish();
+			}
+		}
+	}
+
+	/**
+	 * Builds the package of the completed frame.
+	 * */
+	private Result finish() {
+		step = Step.ID;
+		read = 0;
+		BufferPool pool = connection.getReceiveBufferPool();
+		if((flags & WireFormat.FLAG_COMPRESSED) != 0) {
+			byte[] inflated = decompress(body, length, pool);
+			if(pool != null) pool.release(body);
+			body = null;
+			if(inflated == null) return Result.INVALID_FRAME;
+			body = inflated;
+		}
+		if(info.isLazy()) dataPackage = new LazyPackage(info, body, 0, length);
+		else dataPackage = info.getConstruct().build(info.getId(), info.getLength(), info.isDynamicLength(), body);
+		if(dataPackage != null) {
+			if(channel != 0) dataPackage.setChannelId(channel);
+			if(correlationId != 0) {
+				dataPackage.setCorrelationId(correlationId);
+				dataPackage.setResponse((flags & WireFormat.FLAG_RESPONSE) != 0);
+			}
+		}
+		if(pool != null) {
+			if(dataPackage != null && dataPackage.getByteDataRaw() == body) dataPackage.borrowPayload(pool);
+			else pool.release(body);
+		}
+		body = null;
+		return Result.FRAME;
+	}
+
+	/**
+	 * Adds the bytes consumed since the last update to the checksum of the frame.
+	 * */
+	private void updateChecksum(ByteBuffer in) {
+		if((features & WireFormat.CHECKSUM) == 0 || in.position() == checksumMark) return;
+		if(checksum == null) checksum = new CRC32C();
+		if(in.hasArray()) {
+			checksum.update(in.array(), in.arrayOffset() + checksumMark, in.position() - checksumMark);
+		}else {
+			ByteBuffer consumed = in.duplicate();
+			consumed.limit(in.position()).position(checksumMark);
+			checksum.update(consumed);
+		}
+		checksumMark = in.position();
+	}
+
+	/**
+	 * Continues with the correlation id when the frame is a request or a response.
+	 * */
+	private Result startCorrelation() {
+		if((flags & (WireFormat.FLAG_REQUEST | WireFormat.FLAG_RESPONSE)) == 0) return resolve();
+		step = Step.CORRELATION;
+		read = 0;
+		correlationId = 0;
+		return null;
+	}
+
+	/**
+	 * Looks up the package info of the frame in the package manager of its channel and continues with the length or the body.
+	 * 
+	 * @return null when the frame can be read or the reason why it can not be read.
+	 * */
+	private Result resolve() {
+		PackageManager packageManager = connection.getPackageManager(channel);
+		if(packageManager == null) return Result.NO_PACKAGE_MANAGER;
+		info = packageManager.getPackageInfo(id);
+		if(info == null) return Result.UNKNOWN_PACKAGE;
+		if((flags & WireFormat.FLAG_COMPRESSED) != 0 && !info.isDynamicLength()) return Result.INVALID_FRAME;
+		startLength();
+		return null;
+	}
+
+	private void startLength() {
+		read = 0;
+		length = 0;
+		if(info.isDynamicLength()) {
+			step = Step.LENGTH;
+		}else {
+			length = info.getLength();
+			startBody();
+		}
+	}
+
+	private void startBody() {
+		step = Step.BODY;
+		read = 0;
+		BufferPool pool = connection.getReceiveBufferPool();
+		body = pool != null ? pool.acquire(length) : new byte[length];
+	}
+
+	/**
+	 * Inflates a compressed payload. The payload starts with the uncompressed length followed by the deflated data.
+	 * 
+	 * @return The uncompressed payload or null when the payload is corrupt or too large.
+	 * */
+	private byte[] decompress(byte[] data, int length, BufferPool pool) {
+		if(length < Integer.BYTES) return null;
+		int size = ((data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16) | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+		if(size < 0 || size > Client.getMaxUncompressedPackageSize()) return null;
+		if(inflater == null) inflater = new Inflater();
+		inflater.reset();
+		inflater.setInput(data, Integer.BYTES, length - Integer.BYTES);
+		byte[] out = pool != null ? pool.acquire(size) : new byte[size];
+		try {
+			int inflated = inflater.inflate(out, 0, size);
+			if(inflated == size && (size == 0 || inflater.finished())) return out;
+		} catch (DataFormatException e) {
+			// Handled below as a corrupt frame.
+		}
+		if(pool != null) pool.release(out);
+		return null;
+	}
+
+	int getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Sets the features that are used to decode the following frames.
+	 * */
+	void setFeatures(int features) {
+		this.features = features;
+	}
+
+	/**
+	 * Returns the package of the last completed frame.
+	 * */
+	DataPackage getPackage() {
+		return dataPackage;
+	}
+
+	/**
+	 * Returns the package info of the current or last completed frame.
+	 * */
+	PackageInfo getInfo() {
+		return info;
+	}
+
+	/**
+	 * Returns the unsigned id of the current or last completed frame.
+	 * */
+	int getPackageId() {
+		return id;
+	}
+
+	/**
+	 * Returns the logical channel of the current or last completed frame.
+	 * */
+	int getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Returns the raw id of the current or last completed frame.
+	 * */
+	byte[] getIdBytes() {
+		return new byte[] {(byte)(id >> 8), (byte)id};
+	}
+
+	/**
+	 * Returns the length read from the length prefix of the current frame.
+	 * */
+	int getLength() {
+		return length;
+	}
+
+}
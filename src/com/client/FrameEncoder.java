@@ -0,0 +1,194 @@
+package com.client;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+import com.client.basepackages.BatchPackage;
+import com.client.packageing.DataPackage;
+import com.client.packageing.PackageInfo;
+
+/**
+ * Encodes packages into frames using the features negotiated for the outgoing side of a connection.<br>
+ * <br>
+ * Encoding is done in two steps. <b>prepare()</b> decides on the frame layout, compresses the payload if needed and returns the frame size,
+ * <b>write()</b> then writes the prepared frame into the send buffer.<br>
+ * Packages of logical channels are sent as packages of the default channel when the <b>CHANNELS</b> feature was not negotiated.<br>
+ * With <b>CHECKSUM</b> the checksum of the frame is computed over the bytes that were just written into the send buffer, while they are still in the cache.<br>
+ * The encoder reuses its deflater, its checksum and its compression buffer and must only be used while holding the write lock of the connection.
+ * */
+class FrameEncoder {
+
+	private int features = 0;
+	private int compressionThreshold = 256;
+	private Deflater deflater = null;
+	private byte[] compressed = new byte[0];
+	private CRC32C checksum = null;
+
+	private DataPackage data;
+	private List<DataPackage> batch;
+	private byte flags;
+	private int channel;
+	private int bodyLength;
+
+	/**
+	 * Prepares the frame for the given package.
+	 * 
+	 * @param data The package to encode.
+	 * @param info The package info of the package. Can be null for packages the connection does not know.
+	 * @param channel The logical channel the package is sent on.
+	 * 
+	 * @return The number of bytes <b>write()</b> will write.
+	 * */
+	int prepare(DataPackage data, PackageInfo info, int channel) {
+		this.data = data;
+		this.flags = 0;
+		this.channel = channel;
+		this.bodyLength = data.getPayloadSize();
+		if(features == 0) return data.getFrameSize();
+		
+		if((features & WireFormat.COMPRESSION) != 0 && data.isDynamicLength() && info != null && info.isCompressible()
+				&& bodyLength >= compressionThreshold) {
+			int length = compress(data.getByteDataRaw());
+			if(length > 0) {
+				flags |= WireFormat.FLAG_COMPRESSED;
+				bodyLength = length;
+			}
+		}
+		if(channel != 0 && (features & WireFormat.CHANNELS) != 0) flags |= WireFormat.FLAG_CHANNEL;
+		int header = 1;
+		if((flags & WireFormat.FLAG_CHANNEL) != 0) header++;
+		if(data.getCorrelationId() != 0 && (features & WireFormat.CORRELATION) != 0) {
+			flags |= data.isResponse() ? WireFormat.FLAG_RESPONSE : WireFormat.FLAG_REQUEST;
+			header += Integer.BYTES;
+		}
+		return data.getId().length + header + (data.isDynamicLength() ? lengthSize(bodyLength, data.getLength()) : 0) + bodyLength + trailerSize();
+	}
+
+	/**
+	 * Prepares a <b>BatchPackage</b> frame for the given packages.<br>
+	 * The packages are written straight into the body of the frame, so no batch package has to be created.
+	 * 
+	 * @param packages The packages to send in one frame. Must not be changed until <b>write()</b> was called.
+	 * @param channel The logical channel the packages are sent on.
+	 * 
+	 * @return The number of bytes <b>write()</b> will write.
+	 * */
+	int prepareBatch(List<DataPackage> packages, int channel) {
+		this.data = null;
+		this.batch = packages;
+		this.flags = 0;
+		this.channel = channel;
+		int body = 0;
+		for(DataPackage data : packages) body += data.getFrameSize();
+		this.bodyLength = body;
+		if(features == 0) return DataPackage.IDLENGTH + BatchPackage.PACK_LENGTH + body;
+		if(channel != 0 && (features & WireFormat.CHANNELS) != 0) flags |= WireFormat.FLAG_CHANNEL;
+		return DataPackage.IDLENGTH + ((flags & WireFormat.FLAG_CHANNEL) != 0 ? 2 : 1) + lengthSize(body, BatchPackage.PACK_LENGTH) + body + trailerSize();
+	}
+
+	/**
+	 * Writes the prepared frame into the buffer.
+	 * */
+	void write(ByteBuffer out) {
+		int start = out.position();
+		if(batch != null) {
+			writeBatch(out);
+		}else if(features == 0) {
+			data.writeTo(out);
+			data = null;
+		}else {
+			writeFrame(out);
+		}
+		if((features & WireFormat.CHECKSUM) != 0) writeChecksum(out, start);
+	}
+
+	private void writeFrame(ByteBuffer out) {
+		out.put(data.getId());
+		out.put(flags);
+		if((flags & WireFormat.FLAG_CHANNEL) != 0) out.put((byte)channel);
+		if((flags & (WireFormat.FLAG_REQUEST | WireFormat.FLAG_RESPONSE)) != 0) out.putInt(data.getCorrelationId());
+		if(data.isDynamicLength()) {
+			if((features & WireFormat.VARINT_LENGTH) != 0) WireFormat.putVarInt(out, bodyLength);
+			else DataPackage.putLength(out, bodyLength, data.getLength());
+		}
+		if((flags & WireFormat.FLAG_COMPRESSED) != 0) out.put(compressed, 0, bodyLength);
+		else data.writePayload(out);
+		data = null;
+	}
+
+	private void writeBatch(ByteBuffer out) {
+		out.put(BatchPackage.ID);
+		if(features != 0) {
+			out.put(flags);
+			if((flags & WireFormat.FLAG_CHANNEL) != 0) out.put((byte)channel);
+		}
+		if((features & WireFormat.VARINT_LENGTH) != 0) WireFormat.putVarInt(out, bodyLength);
+		else DataPackage.putLength(out, bodyLength, BatchPackage.PACK_LENGTH);
+		for(DataPackage data : batch) data.writeTo(out);
+		batch = null;
+	}
+
+	/**
+	 * Appends the checksum of all bytes written since <b>start</b>.
+	 * */
+	private void writeChecksum(ByteBuffer out, int start) {
+		if(checksum == null) checksum = new CRC32C();
+		checksum.reset();
+		if(out.hasArray()) {
+			checksum.update(out.array(), out.arrayOffset() + start, out.position() - start);
+		}else {
+			ByteBuffer frame = out.duplicate();
+			frame.flip().position(start);
+			checksum.update(frame);
+		}
+		out.putInt((int) checksum.getValue());
+	}
+
+	private int trailerSize() {
+		return (features & WireFormat.CHECKSUM) != 0 ? Integer.BYTES : 0;
+	}
+
+	private int lengthSize(int length, int width) {
+		return (features & WireFormat.VARINT_LENGTH) != 0 ? WireFormat.varIntSize(length) : width;
+	}
+
+	/**
+	 * Compresses the payload into the compression buffer.<br>
+	 * The compressed payload starts with the uncompressed length as int followed by the deflated data.
+	 * 
+	 * @return The length of the compressed payload or 0 when compressing does not make the payload smaller.
+	 * */
+	private int compress(byte[] raw) {
+		if(deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+		if(compressed.length < raw.length) compressed = new byte[raw.length];
+		int limit = raw.length - 1;
+		compressed[0] = (byte)(raw.length >>> 24);
+		compressed[1] = (byte)(raw.length >>> 16);
+		compressed[2] = (byte)(raw.length >>> 8);
+		compressed[3] = (byte)raw.length;
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		int length = Integer.BYTES + deflater.deflate(compressed, Integer.BYTES, limit - Integer.BYTES);
+		return deflater.finished() ? length : 0;
+	}
+
+	int getFeatures() {
+		return features;
+	}
+
+	void setFeatures(int features) {
+		this.features = features;
+	}
+
+	int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = Math.max(compressionThreshold, Integer.BYTES + 1);
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.client;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.client.asyncworker.Timeout;
+import com.client.asyncworker.TimingWheel;
+
+/**
+ * Keeps connections alive and detects dead connections without socket timeouts.<br>
+ * <br>
+ * All connections of a manager are checked by one periodic task on a {@link TimingWheel}, so no connection needs a timer
+ * or a blocking read timeout of its own.<br>
+ * A connection that did not write anything for <b>writeIdle</b> sends a <b>KeepAlive</b>. Connections that are busy sending do not send heartbeats.<br>
+ * A connection that did not receive anything for <b>readIdle</b> is timed out: the timeout callback is called and the connection is closed.
+ * A quiet connection stays open as long as the remote side sends heartbeats or answers them.<br>
+ * <br>
+ * When <b>CORRELATION</b> was negotiated heartbeats are sent as requests that the remote side answers right away.
+ * The answers keep the read side alive even when the remote side does not send heartbeats itself
+ * and give the round trip time of the connection. See {@link ClientConnection#getRoundTripNanos()}<br>
+ * <br>
+ * The timeout callbacks are run by the thread of the timing wheel and should be short.
+ * */
+public class HeartbeatManager {
+
+	private final long writeIdleNanos;
+	private final long readIdleNanos;
+	private final TimingWheel wheel;
+	private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+	private Timeout task = null;
+
+	/**
+	 * Creates a heartbeat manager on the timing wheel shared by the whole client.
+	 * 
+	 * @param writeIdle The time without writes after which a heartbeat is sent.
+	 * @param readIdle The time without reads after which a connection is timed out. Null or zero never times out connections.
+	 * */
+	public HeartbeatManager(Duration writeIdle, Duration readIdle) {
+		this(writeIdle, readIdle, TimingWheel.getDefault());
+	}
+
+	/**
+	 * Creates a heartbeat manager on the given timing wheel.
+	 * 
+	 * @param writeIdle The time without writes after which a heartbeat is sent.
+	 * @param readIdle The time without reads after which a connection is timed out. Null or zero never times out connections.
+	 * @param wheel The timing wheel that drives the checks.
+	 * */
+	public HeartbeatManager(Duration writeIdle, Duration readIdle, TimingWheel wheel) {
+		if(writeIdle == null || wheel == null)
+			throw new NullPointerException("The write idle time and the timing wheel can not be null!");
+		if(writeIdle.isNegative() || writeIdle.isZero())
+			throw new IllegalArgumentException("The write idle time has to be larger then 0!");
+		this.writeIdleNanos = writeIdle.toNanos();
+		this.readIdleNanos = readIdle == null || readIdle.isNegative() ? 0 : readIdle.toNanos();
+		if(readIdleNanos > 0 && readIdleNanos <= writeIdleNanos)
+			throw new IllegalArgumentException("The read idle time has to be larger then the write idle time!");
+		this.wheel = wheel;
+	}
+
+	/**
+	 * Adds a connection. The connection is removed again when it is closed.
+	 * */
+	public void add(ClientConnection connection) {
+		connections.add(connection);
+		start();
+	}
+
+	public void remove(ClientConnection connection) {
+		connections.remove(connection);
+	}
+
+	/**
+	 * Returns the number of connections that are checked.
+	 * */
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	private synchronized void start() {
+		if(task != null) return;
+		// Checks a few times per idle period, so heartbeats and timeouts are at most a quarter period late.
+		long period = Math.max(wheel.getTickNanos(), Math.min(writeIdleNanos, readIdleNanos > 0 ? readIdleNanos : writeIdleNanos) / 4);
+		task = wheel.scheduleAtFixedRate(this::check, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops checking all connections. The connections stay open.
+	 * */
+	public synchronized void shutdown() {
+		if(task != null) task.cancel();
+		task = null;
+		connections.clear();
+	}
+
+	private void check() {
+		for(ClientConnection connection : connections) {
+			if(!connection.isActive()) {
+				connections.remove(connection);
+				continue;
+			}
+			if(readIdleNanos > 0 && connection.getReadIdleNanos() > readIdleNanos) {
+				connections.remove(connection);
+				connection.timeOut();
+				continue;
+			}
+			if(connection.getWriteIdleNanos() >= writeIdleNanos) connection.sendHeartbeat(readIdleNanos > 0 ? readIdleNanos : writeIdleNanos);
+		}
+	}
+
+	public Duration getWriteIdle() {
+		return Duration.ofNanos(writeIdleNanos);
+	}
+
+	public Duration getReadIdle() {
+		return Duration.ofNanos(readIdleNanos);
+	}
+
+}
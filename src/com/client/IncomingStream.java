@@ -0,0 +1,169 @@
+package com.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.client.basepackages.StreamChunk;
+
+/**
+ * A stream received from the remote side of a connection.<br>
+ * <br>
+ * The data arrives in chunks that are kept until they are read. The remote side only sends as many chunks as
+ * this side allowed it to, so only a few chunks of a stream are held in memory at any time.<br>
+ * Reading blocks until the next chunk arrives. When the remote side aborts the stream or the connection is closed
+ * reading throws an IOException.
+ * */
+public class IncomingStream {
+
+	private static final StreamChunk CLOSED = new StreamChunk(0, StreamChunk.ABORT);
+
+	private final StreamManager manager;
+	private final int streamId;
+	private final LinkedBlockingQueue<StreamChunk> chunks = new LinkedBlockingQueue<>();
+	private final ChunkInputStream inputStream = new ChunkInputStream();
+
+	IncomingStream(StreamManager manager, int streamId) {
+		this.manager = manager;
+		this.streamId = streamId;
+	}
+
+	/**
+	 * Adds a received chunk. Called by the reading thread of the connection.
+	 * */
+	void offer(StreamChunk chunk) {
+		chunks.add(chunk);
+	}
+
+	/**
+	 * Ends the stream because the connection was closed.
+	 * */
+	void abort() {
+		chunks.add(CLOSED);
+	}
+
+	public int getStreamId() {
+		return streamId;
+	}
+
+	/**
+	 * Returns the stream data as input stream.<br>
+	 * Closing the input stream before it ended cancels the stream at the remote side.
+	 * */
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * Returns the stream data as channel. The channel reads from the input stream of this stream.
+	 * */
+	public ReadableByteChannel getChannel() {
+		return Channels.newChannel(inputStream);
+	}
+
+	/**
+	 * Closes the stream. Data that was not read yet is dropped and the remote side stops sending.
+	 * */
+	public void close() {
+		inputStream.close();
+	}
+
+	private class ChunkInputStream extends InputStream {
+
+		private StreamChunk current = null;
+		private int position = 0;
+		private int consumed = 0;
+		private boolean ended = false;
+		private boolean closed = false;
+
+		@Override
+		public int read() throws IOException {
+			if(!nextChunk()) return -1;
+			return current.getByteDataRaw()[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+			if(len == 0) return 0;
+			if(!nextChunk()) return -1;
+			int count = Math.min(len, current.getByteDataRaw().length - position);
+			System.arraycopy(current.getByteDataRaw(), position, b, off, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return current == null ? 0 : current.getByteDataRaw().length - position;
+		}
+
+		/**
+		 * Makes sure there is unread data in the current chunk.<br>
+		 * Finished chunks are given back to the receive buffer pool and granted as credit to the remote side.
+		 * Credits are sent in batches, but always before waiting for the next chunk.
+		 * */
+		private boolean nextChunk() throws IOException {
+			if(closed) throw new IOException("Stream is closed!");
+			while(current == null || position == current.getByteDataRaw().length) {
+				if(ended) return false;
+				if(current != null) {
+					current.release();
+					current = null;
+					if(++consumed >= StreamManager.CREDIT_BATCH) grantCredits();
+				}
+				StreamChunk chunk = chunks.poll();
+				if(chunk == null) {
+					grantCredits();
+					try {
+						chunk = chunks.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while waiting for stream data!", e);
+					}
+				}
+				switch(chunk.getType()) {
+				case StreamChunk.DATA:
+					current = chunk;
+					position = StreamChunk.HEADER_LENGTH;
+					break;
+				case StreamChunk.END:
+					chunk.release();
+					ended = true;
+					manager.removeIncoming(streamId);
+					return false;
+				default:
+					chunk.release();
+					ended = true;
+					manager.removeIncoming(streamId);
+					throw new IOException(chunk == CLOSED ? "Connection was closed!" : "Stream was aborted by the remote side!");
+				}
+			}
+			return true;
+		}
+
+		private void grantCredits() {
+			if(consumed == 0 || ended) return;
+			manager.grant(streamId, consumed);
+			consumed = 0;
+		}
+
+		@Override
+		public void close() {
+			if(closed) return;
+			closed = true;
+			if(current != null) current.release();
+			current = null;
+			if(!ended) {
+				ended = true;
+				manager.cancel(streamId);
+			}
+			StreamChunk chunk;
+			while((chunk = chunks.poll()) != null) chunk.release();
+		}
+
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.client;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.client.packageing.DataPackage;
+import com.client.packageing.PackageManager;
+
+/**
+ * A logical channel of a connection. All channels of a connection share its socket.<br>
+ * <br>
+ * Every channel has a send queue of its own. The writer of the connection takes packages from the queues by their weight,
+ * so a channel with weight 4 gets four times the bandwidth of a channel with weight 1 while both have packages queued.<br>
+ * Bulk traffic on one channel therefore does not delay the packages of other channels by more then a few frames.<br>
+ * <br>
+ * Channels are opened by each side on its own. Both sides have to agree on what the channel ids are used for.<br>
+ * The channel id is only sent when the <b>CHANNELS</b> feature was negotiated with a handshake. Otherwise all packages arrive on the default channel.
+ * */
+public class LogicalChannel {
+
+	static final int DEFAULT_WEIGHT = 1;
+
+	private final ClientConnection connection;
+	private final int id;
+	final SendQueue queue;
+	private volatile int weight;
+	private volatile PackageManager packageManager = null;
+	volatile boolean closed = false;
+
+	// Deficit round robin state. Only used by the writer of the connection.
+	int deficit = 0;
+	boolean scheduled = false;
+
+	LogicalChannel(ClientConnection connection, int id, int weight, SendQueue queue) {
+		this.connection = connection;
+		this.id = id;
+		this.queue = queue;
+		setWeight(weight);
+	}
+
+	/**
+	 * Queues a package to be sent on this channel. See {@link ClientConnection#sendAsync(DataPackage)}
+	 * 
+	 * @param data The package to send.
+	 * 
+	 * @return A future that is completed when the package was written to the socket.
+	 * */
+	public CompletableFuture<Void> sendAsync(DataPackage data) {
+		return connection.sendAsync(this, data);
+	}
+
+	/**
+	 * Sends a package on this channel right away, bypassing the send queues. See {@link ClientConnection#send(DataPackage)}
+	 * 
+	 * @param data The package to send.
+	 * */
+	public void send(DataPackage data) {
+		connection.send(this, data);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Sets the share of the bandwidth this channel gets compared to the other channels of the connection.
+	 * 
+	 * @param weight The weight of the channel. Has to be at least 1.
+	 * */
+	public void setWeight(int weight) {
+		if(weight < 1)
+			throw new IllegalArgumentException("The weight of a channel has to be at least 1!");
+		this.weight = weight;
+	}
+
+	/**
+	 * Returns the package manager used for packages received on this channel or null when the package manager of the connection is used.
+	 * */
+	public PackageManager getPackageManager() {
+		return packageManager;
+	}
+
+	/**
+	 * Sets the package manager used for packages received on this channel.<br>
+	 * Set to null to use the package manager of the connection.
+	 * */
+	public void setPackageManager(PackageManager packageManager) {
+		this.packageManager = packageManager;
+	}
+
+	/**
+	 * Returns false while the queued bytes of this channel are above its high watermark.
+	 * */
+	public boolean isWritable() {
+		return queue.isWritable();
+	}
+
+	public long getQueuedBytes() {
+		return queue.getQueuedBytes();
+	}
+
+	public void setSendQueueCapacity(int capacity) {
+		queue.setCapacity(capacity);
+	}
+
+	public void setWriteBufferWatermarks(long low, long high) {
+		queue.setWatermarks(low, high);
+	}
+
+	/**
+	 * Returns true when the channel was closed. Packages can not be sent on a closed channel anymore.
+	 * */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public ClientConnection getConnection() {
+		return connection;
+	}
+
+}
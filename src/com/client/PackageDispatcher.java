@@ -0,0 +1,105 @@
+package com.client;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.client.main.Client;
+import com.logger.Level;
+
+/**
+ * Hands received packages of a connection to an executor while keeping their order.<br>
+ * <br>
+ * Packages are put into serial queues. Each queue is run by at most one task of the executor at a time,
+ * so the packages of one queue are handled in order while different queues run in parallel.<br>
+ * With {@link DispatchOrdering#PER_CONNECTION} there is a single queue, with {@link DispatchOrdering#PER_PACKAGE}
+ * the package id selects one of several queues.
+ * */
+class PackageDispatcher {
+
+	private static final int PACKAGE_QUEUES = 64;
+	private static final int MAX_TASKS_PER_RUN = 64;
+
+	private final Executor executor;
+	private final DispatchOrdering ordering;
+	private final SerialQueue[] queues;
+
+	PackageDispatcher(Executor executor, DispatchOrdering ordering) {
+		if(executor == null || ordering == null)
+			throw new NullPointerException("Executor and ordering can not be null!");
+		this.executor = executor;
+		this.ordering = ordering;
+		this.queues = new SerialQueue[ordering == DispatchOrdering.PER_CONNECTION ? 1 : PACKAGE_QUEUES];
+		for(int i = 0; i < queues.length; i++) queues[i] = new SerialQueue();
+	}
+
+	/**
+	 * Queues the task for the package with the given id.
+	 * */
+	void dispatch(int packageId, Runnable task) {
+		queues[(packageId & 0xFFFF) % queues.length].execute(task);
+	}
+
+	Executor getExecutor() {
+		return executor;
+	}
+
+	DispatchOrdering getOrdering() {
+		return ordering;
+	}
+
+	private final class SerialQueue implements Runnable {
+
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		void execute(Runnable task) {
+			tasks.add(task);
+			schedule();
+		}
+
+		private void schedule() {
+			while(scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+					return;
+				}catch(RejectedExecutionException e) {
+					Client.getLogger().log(Level.ERROR, "Dispatch executor rejected received packages! Handling them on the calling thread.");
+				}
+				// The queue stays scheduled while it is drained here, so no other thread can run it at the same time.
+				try {
+					drain(Integer.MAX_VALUE);
+				}finally {
+					scheduled.set(false);
+				}
+				if(tasks.isEmpty()) return;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				drain(MAX_TASKS_PER_RUN);
+			}finally {
+				scheduled.set(false);
+				if(!tasks.isEmpty()) schedule();
+			}
+		}
+
+		private void drain(int max) {
+			Runnable task;
+			for(int i = 0; i < max && (task = tasks.poll()) != null; i++) {
+				try {
+					task.run();
+				}catch(RuntimeException e) {
+					Client.getLogger().log(Level.ERROR, "A package callback caused an error while executing!");
+					Client.getLogger().log(Level.ERROR, e, e.getClass());
+				}
+			}
+		}
+
+	}
+
+}
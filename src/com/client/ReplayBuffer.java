@@ -0,0 +1,116 @@
+package com.client;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+import com.client.packageing.DataPackage;
+
+/**
+ * Keeps outgoing packages while a connection is lost, so they can be sent once the client is connected again.<br>
+ * <br>
+ * A connection with a replay buffer hands the packages of its default channel that were still queued when it was closed to the buffer
+ * instead of failing them. Their futures are completed when they were sent over the next connection.<br>
+ * Requests and packages of other logical channels are not replayed, because their correlation ids and channels belong to the old connection.
+ * Packages that were already written to the socket are not replayed either.<br>
+ * <br>
+ * Once <b>replayTo()</b> was called all kept packages are sent in order and new packages are passed straight to the new connection.
+ * The buffer is thread safe.
+ * */
+public class ReplayBuffer {
+
+	private static final class Entry {
+		final DataPackage data;
+		final CompletableFuture<Void> future;
+
+		Entry(DataPackage data, CompletableFuture<Void> future) {
+			this.data = data;
+			this.future = future;
+		}
+	}
+
+	private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+	private final int capacity;
+	private ClientConnection target = null;
+	// Set by fail(). Packages offered to a failed buffer are failed right away until the buffer is used for a new connection.
+	private Throwable failure = null;
+
+	/**
+	 * @param capacity The max number of packages that are kept.
+	 * */
+	public ReplayBuffer(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("The capacity has to be at least 1!");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Keeps a package until the next connection is available or sends it right away when it already is.
+	 * 
+	 * @param data The package to send.
+	 * @param future Is completed when the package was sent over the next connection.
+	 * 
+	 * @return false when the buffer is full. The future is not completed in that case.
+	 * After <b>fail()</b> the future is completed exceptionally right away and true is returned.
+	 * */
+	public synchronized boolean offer(DataPackage data, CompletableFuture<Void> future) {
+		if(failure != null) {
+			future.completeExceptionally(failure);
+			return true;
+		}
+		if(target != null && target.isActive()) {
+			forward(target, data, future);
+			return true;
+		}
+		if(entries.size() >= capacity) return false;
+		entries.add(new Entry(data, future));
+		return true;
+	}
+
+	/**
+	 * Sends all kept packages over the connection and passes all following packages to it.<br>
+	 * A failed buffer accepts packages again after this call.
+	 * */
+	public synchronized void replayTo(ClientConnection connection) {
+		this.target = connection;
+		this.failure = null;
+		Entry entry;
+		while((entry = entries.poll()) != null) forward(connection, entry.data, entry.future);
+	}
+
+	/**
+	 * Stops passing packages to the last connection. Following packages are kept again.
+	 * */
+	public synchronized void detach() {
+		this.target = null;
+	}
+
+	/**
+	 * Completes the futures of all kept packages exceptionally and removes them.<br>
+	 * Packages that are offered after this call are failed with the same cause until <b>replayTo()</b> is called again.
+	 * */
+	public synchronized void fail(Throwable cause) {
+		this.target = null;
+		this.failure = cause;
+		Entry entry;
+		while((entry = entries.poll()) != null) entry.future.completeExceptionally(cause);
+	}
+
+	/**
+	 * Returns the number of kept packages.
+	 * */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	private static void forward(ClientConnection connection, DataPackage data, CompletableFuture<Void> future) {
+		connection.sendAsync(data).whenComplete((result, error) -> {
+			if(error != null) future.completeExceptionally(error);
+			else future.complete(null);
+		});
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.client.asyncworker.Timeout;
+import com.client.asyncworker.TimingWheel;
+import com.client.packageing.DataPackage;
+
+/**
+ * Keeps track of the requests of a connection that are waiting for their response.<br>
+ * <br>
+ * Every request gets a correlation id that is unique on its connection. The response carries the same id,
+ * so any number of requests can be in flight at the same time and the responses can arrive in any order.<br>
+ * The timeouts of the requests are driven by the shared {@link TimingWheel}, so waiting requests do not cost a thread or a scheduler entry each.
+ * */
+class RequestTracker {
+
+	static final class Pending {
+		final CompletableFuture<DataPackage> future = new CompletableFuture<>();
+		int id;
+		volatile Timeout timeout;
+
+		void cancelTimeout() {
+			Timeout timeout = this.timeout;
+			if(timeout != null) timeout.cancel();
+		}
+	}
+
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final ConcurrentHashMap<Integer, Pending> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers a new request and starts its timeout.
+	 * 
+	 * @return The registered request.
+	 * */
+	Pending register(long timeoutNanos) {
+		Pending request = new Pending();
+		int id;
+		do {
+			id = nextId.incrementAndGet();
+		}while(id == 0 || pending.putIfAbsent(id, request) != null);
+		request.id = id;
+		request.timeout = TimingWheel.getDefault().schedule(() -> {
+			if(pending.remove(request.id, request))
+				request.future.completeExceptionally(new TimeoutException("Request " + request.id + " timed out!"));
+		}, timeoutNanos, TimeUnit.NANOSECONDS);
+		return request;
+	}
+
+	/**
+	 * Completes the request the response belongs to.
+	 * 
+	 * @return false when no request is waiting for the response, for example because it timed out.
+	 * */
+	boolean complete(DataPackage response) {
+		Pending request = pending.remove(response.getCorrelationId());
+		if(request == null) return false;
+		request.cancelTimeout();
+		request.future.complete(response);
+		return true;
+	}
+
+	/**
+	 * Fails a single request, for example because it could not be sent.
+	 * */
+	void fail(int correlationId, Throwable error) {
+		Pending request = pending.remove(correlationId);
+		if(request == null) return;
+		request.cancelTimeout();
+		request.future.completeExceptionally(error);
+	}
+
+	/**
+	 * Fails all waiting requests. Called when the connection is closed.
+	 * */
+	void close() {
+		for(Integer id : pending.keySet()) fail(id, new IOException("Connection was closed before the response was received!"));
+	}
+
+	int getPendingCount() {
+		return pending.size();
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.client;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.client.main.Client;
+import com.logger.Level;
+
+/**
+ * A single selector thread of a {@link ConnectionSelector}.<br>
+ * All changes to the registered keys are queued and applied by the selector thread itself.
+ * */
+class SelectorLoop implements Runnable {
+
+	private final Selector selector;
+	private final Thread thread;
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+	private volatile boolean running = true;
+
+	SelectorLoop(String name) throws IOException {
+		this.selector = Selector.open();
+		this.thread = Client.getThreadFactory().newThread(this);
+		this.thread.setName(name);
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		this.thread.start();
+	}
+
+	void register(ClientConnection connection) {
+		execute(() -> {
+			try {
+				SelectionKey key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+				connection.attach(this, key);
+			} catch (ClosedChannelException e) {
+				connection.disable(Level.ERROR, "Could not register connection with the selector! Channel was closed.");
+			}
+		});
+	}
+
+	/**
+	 * Enables or disables the write interest of the connection.<br>
+	 * Write interest is only needed while a connection has data that could not be written right away.
+	 * */
+	void setWriteInterest(ClientConnection connection, boolean write) {
+		execute(() -> {
+			SelectionKey key = connection.getSelectionKey();
+			if(key == null || !key.isValid()) return;
+			key.interestOps(write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		});
+	}
+
+	void execute(Runnable task) {
+		pending.add(task);
+		if(Thread.currentThread() != thread) selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while(running) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				Client.getLogger().log(Level.ERROR, e, e.getClass());
+				break;
+			}
+
+			runPending();
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while(keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				ClientConnection connection = (ClientConnection) key.attachment();
+				try {
+					if(key.isValid() && key.isReadable()) connection.handleRead();
+					if(key.isValid() && key.isWritable()) connection.handleWrite();
+				}catch(CancelledKeyException e) {
+					// The connection was disabled while being handled.
+				}
+			}
+			// Tasks queued by the handlers above do not wake the selector, so they have to run before the next select.
+			runPending();
+		}
+
+		try {
+			selector.close();
+		} catch (IOException e) {
+			Client.getLogger().log(Level.ERROR, e, e.getClass());
+		}
+	}
+
+	private void runPending() {
+		Runnable task;
+		while((task = pending.poll()) != null) task.run();
+	}
+
+	void shutdown() throws InterruptedException {
+		this.running = false;
+		selector.wakeup();
+		if(Thread.currentThread() != thread) thread.join();
+	}
+
+}
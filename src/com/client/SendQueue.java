@@ -0,0 +1,173 @@
+package com.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.client.packageing.DataPackage;
+
+/**
+ * Bounded outbound queue of a connection.<br>
+ * Any number of threads can add packages without locking. The packages are taken out by the single writer of the connection.<br>
+ * <br>
+ * The queue keeps track of the bytes waiting to be written and changes the writability of the connection
+ * when they cross the high or the low watermark.<br>
+ * Producers that have to wait for a full queue can block in {@link #awaitSpace()} until the writer took an entry out.
+ * */
+class SendQueue {
+
+	static final class Entry {
+		final DataPackage data;
+		final CompletableFuture<Void> future;
+		final int size;
+		final int channel;
+
+		Entry(DataPackage data, CompletableFuture<Void> future, int channel) {
+			this.data = data;
+			this.future = future;
+			this.size = data.getFrameSize();
+			this.channel = channel;
+		}
+	}
+
+	private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger count = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicBoolean writable = new AtomicBoolean(true);
+	private final ReentrantLock spaceLock = new ReentrantLock();
+	private final Condition notFull = spaceLock.newCondition();
+	private volatile int spaceWaiters = 0;
+
+	private volatile int capacity;
+	private volatile long lowWatermark;
+	private volatile long highWatermark;
+
+	SendQueue(int capacity, long lowWatermark, long highWatermark) {
+		this.capacity = capacity;
+		setWatermarks(lowWatermark, highWatermark);
+	}
+
+	/**
+	 * Adds an entry to the queue.
+	 * 
+	 * @return false when the queue is full.
+	 * */
+	boolean offer(Entry entry) {
+		if(count.incrementAndGet() > capacity) {
+			count.decrementAndGet();
+			return false;
+		}
+		bytes.addAndGet(entry.size);
+		queue.offer(entry);
+		return true;
+	}
+
+	/**
+	 * Takes the next entry from the queue. Must only be called by the writer.
+	 * */
+	Entry poll() {
+		Entry entry = queue.poll();
+		if(entry != null) {
+			count.decrementAndGet();
+			bytes.addAndGet(-entry.size);
+			if(spaceWaiters > 0) signalSpace();
+		}
+		return entry;
+	}
+
+	/**
+	 * Blocks until the queue has room for another entry.<br>
+	 * The waiter is registered before the size is checked and the writer checks for waiters after it took an entry out,
+	 * so a wakeup can not get lost. The writer only takes the lock while someone is waiting.
+	 * */
+	void awaitSpace() throws InterruptedException {
+		spaceLock.lock();
+		try {
+			spaceWaiters++;
+			try {
+				while(count.get() >= capacity) notFull.await();
+			}finally {
+				spaceWaiters--;
+			}
+		}finally {
+			spaceLock.unlock();
+		}
+	}
+
+	private void signalSpace() {
+		spaceLock.lock();
+		try {
+			notFull.signalAll();
+		}finally {
+			spaceLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the next entry without taking it from the queue. Must only be called by the writer.
+	 * */
+	Entry peek() {
+		return queue.peek();
+	}
+
+	boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Marks the queue as not writable when the queued bytes reached the high watermark.
+	 * 
+	 * @return true when the writability changed with this call.
+	 * */
+	boolean checkHighWatermark() {
+		return bytes.get() >= highWatermark && writable.compareAndSet(true, false);
+	}
+
+	/**
+	 * Marks the queue as writable when the queued bytes dropped to the low watermark.
+	 * 
+	 * @return true when the writability changed with this call.
+	 * */
+	boolean checkLowWatermark() {
+		return bytes.get() <= lowWatermark && writable.compareAndSet(false, true);
+	}
+
+	boolean isWritable() {
+		return writable.get();
+	}
+
+	long getQueuedBytes() {
+		return bytes.get();
+	}
+
+	int getCapacity() {
+		return capacity;
+	}
+
+	void setCapacity(int capacity) {
+		if(capacity <= 0)
+			throw new IllegalArgumentException("The send queue capacity has to be larger then 0!");
+		this.capacity = capacity;
+		if(spaceWaiters > 0) signalSpace();
+	}
+
+	void setWatermarks(long lowWatermark, long highWatermark) {
+		if(lowWatermark < 0 || highWatermark < lowWatermark)
+			throw new IllegalArgumentException("The watermarks have to satisfy: 0 <= low <= high!");
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+	}
+
+	long getLowWatermark() {
+		return lowWatermark;
+	}
+
+	long getHighWatermark() {
+		return highWatermark;
+	}
+
+}
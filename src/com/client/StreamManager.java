@@ -0,0 +1,247 @@
+package com.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.client.basepackages.StreamChunk;
+import com.client.main.Client;
+import com.logger.Level;
+
+/**
+ * Sends and receives the streams of a connection.<br>
+ * <br>
+ * A stream is split into chunks of at most <b>chunkSize</b> bytes that are sent as <b>StreamChunk</b> packages.<br>
+ * Every outgoing stream is sent by a thread of its own that puts one chunk at a time into the send queue
+ * and waits until it was written. Packages sent in the meantime are queued between the chunks, so they never wait for a whole stream.<br>
+ * <br>
+ * The sender may only have <b>window</b> chunks in flight. The receiver grants new chunks as soon as the data was read,
+ * so a stream is never held in memory as a whole at either side.
+ * */
+class StreamManager {
+
+	static final int DEFAULT_CHUNK_SIZE = 16384;
+	static final int DEFAULT_WINDOW = 8;
+	static final int CREDIT_BATCH = 4;
+
+	private final ClientConnection connection;
+	private final AtomicInteger nextStreamId = new AtomicInteger();
+	private final ConcurrentHashMap<Integer, OutgoingStream> outgoing = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, IncomingStream> incoming = new ConcurrentHashMap<>();
+	private int lastIncomingId = 0;
+	private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+	private volatile int window = DEFAULT_WINDOW;
+	private volatile ClientStreamCallback streamCallback = null;
+
+	StreamManager(ClientConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Starts sending the stream. The input stream is closed when the stream was sent or failed.
+	 * */
+	CompletableFuture<Void> send(InputStream in) {
+		OutgoingStream stream = new OutgoingStream(nextStreamId.incrementAndGet(), in, window);
+		outgoing.put(stream.id, stream);
+		Thread thread = Client.getThreadFactory().newThread(stream);
+		thread.start();
+		return stream.future;
+	}
+
+	/**
+	 * Handles a received chunk on the reading thread of the connection.
+	 * 
+	 * @return false when the chunk is malformed.
+	 * */
+	boolean handle(StreamChunk chunk) {
+		if(!chunk.isValid()) {
+			chunk.release();
+			return false;
+		}
+		int id = chunk.getStreamId();
+		switch(chunk.getType()) {
+		case StreamChunk.DATA:
+		case StreamChunk.END:
+		case StreamChunk.ABORT:
+			IncomingStream stream = incoming.get(id);
+			if(stream == null && chunk.getType() != StreamChunk.ABORT && id > lastIncomingId) {
+				lastIncomingId = id;
+				stream = open(id);
+			}
+			if(stream == null) {
+				chunk.release();
+				return true;
+			}
+			if(chunk.getType() != StreamChunk.DATA) incoming.remove(id);
+			stream.offer(chunk);
+			return true;
+		case StreamChunk.CANCEL:
+		case StreamChunk.CREDIT:
+			OutgoingStream out = outgoing.get(id);
+			if(out != null) {
+				if(chunk.getType() == StreamChunk.CANCEL) out.cancel();
+				else if(!out.canceled && chunk.getCredits() > 0) out.credits.release(Math.min(chunk.getCredits(), Short.MAX_VALUE));
+			}
+			chunk.release();
+			return true;
+		default:
+			chunk.release();
+			return false;
+		}
+	}
+
+	private IncomingStream open(int id) {
+		ClientStreamCallback callback = this.streamCallback;
+		if(callback == null) {
+			Client.logger.log(Level.WARNING, "Received a stream but no stream callback is set! Stream will be canceled.");
+			connection.sendAsync(new StreamChunk(id, StreamChunk.CANCEL));
+			return null;
+		}
+		IncomingStream stream = new IncomingStream(this, id);
+		incoming.put(id, stream);
+		Client.getThreadFactory().newThread(() -> {
+			try {
+				callback.call(connection, stream);
+			}catch(RuntimeException e) {
+				Client.logger.log(Level.ERROR, "The stream callback caused an error while executing!");
+				Client.logger.log(Level.ERROR, e, e.getClass());
+				stream.close();
+			}
+		}).start();
+		return stream;
+	}
+
+	void grant(int id, int chunks) {
+		connection.sendAsync(StreamChunk.credit(id, chunks));
+	}
+
+	void cancel(int id) {
+		if(incoming.remove(id) != null) connection.sendAsync(new StreamChunk(id, StreamChunk.CANCEL));
+	}
+
+	void removeIncoming(int id) {
+		incoming.remove(id);
+	}
+
+	/**
+	 * Fails all streams of the connection. Called when the connection is closed.
+	 * */
+	void close() {
+		for(IncomingStream stream : incoming.values()) stream.abort();
+		incoming.clear();
+		for(OutgoingStream stream : outgoing.values()) stream.cancel();
+	}
+
+	int getChunkSize() {
+		return chunkSize;
+	}
+
+	void setChunkSize(int chunkSize) {
+		if(chunkSize < 1)
+			throw new IllegalArgumentException("The chunk size has to be at least 1!");
+		this.chunkSize = chunkSize;
+	}
+
+	int getWindow() {
+		return window;
+	}
+
+	void setWindow(int window) {
+		if(window < 1)
+			throw new IllegalArgumentException("The stream window has to be at least 1!");
+		this.window = window;
+	}
+
+	ClientStreamCallback getStreamCallback() {
+		return streamCallback;
+	}
+
+	void setStreamCallback(ClientStreamCallback streamCallback) {
+		this.streamCallback = streamCallback;
+	}
+
+	private class OutgoingStream implements Runnable {
+
+		private final int id;
+		private final InputStream in;
+		private final Semaphore credits;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+		private volatile boolean canceled = false;
+
+		OutgoingStream(int id, InputStream in, int window) {
+			this.id = id;
+			this.in = in;
+			this.credits = new Semaphore(window);
+		}
+
+		@Override
+		public void run() {
+			try {
+				int size = Math.max(1, Math.min(chunkSize, Client.getMaxPackageSize() - StreamChunk.HEADER_LENGTH));
+				byte[] buffer = new byte[size];
+				while(true) {
+					credits.acquire();
+					if(canceled) throw new IOException("Stream was canceled!");
+					int length = readChunk(buffer);
+					if(length < 0) break;
+					write(new StreamChunk(id, StreamChunk.DATA, buffer, 0, length));
+				}
+				write(new StreamChunk(id, StreamChunk.END));
+				future.complete(null);
+			}catch(Exception e) {
+				if(e instanceof InterruptedException) Thread.currentThread().interrupt();
+				if(!canceled) connection.sendAsync(new StreamChunk(id, StreamChunk.ABORT));
+				future.completeExceptionally(e);
+			}finally {
+				outgoing.remove(id);
+				try {
+					in.close();
+				} catch (IOException e) {
+					Client.logger.log(Level.WARNING, e, e.getClass());
+				}
+			}
+		}
+
+		/**
+		 * Fills the buffer as far as possible.
+		 * 
+		 * @return The number of bytes read or -1 when the input stream ended before any byte was read.
+		 * */
+		private int readChunk(byte[] buffer) throws IOException {
+			int length = 0;
+			while(length < buffer.length) {
+				int read = in.read(buffer, length, buffer.length - length);
+				if(read < 0) return length == 0 ? -1 : length;
+				length += read;
+			}
+			return length;
+		}
+
+		/**
+		 * Queues the chunk and waits until it was written, so a stream never has more then one chunk in the send queue.
+		 * */
+		private void write(StreamChunk chunk) throws Exception {
+			while(true) {
+				try {
+					connection.sendAsync(chunk).get();
+					return;
+				}catch(ExecutionException e) {
+					if(!(e.getCause() instanceof RejectedExecutionException) || canceled) throw e;
+				}
+				connection.awaitSendQueueSpace();
+			}
+		}
+
+		void cancel() {
+			canceled = true;
+			credits.release(Integer.MAX_VALUE / 2);
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.client;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Optional features of the frame format that can be negotiated per connection with a <b>ProtocolHandshake</b>.<br>
+ * <br>
+ * Without negotiated features a frame consists of the package id, the length prefix for dynamic packages and the raw data.<br>
+ * As soon as any feature is negotiated every frame carries one flag byte right after the package id:
+ * <pre> ID	  Flags	 Length	  RawData
+ * [0x0 0x0][0x0][0x0 0x0 0x0 0x1][0x0]</pre>
+ * With <b>VARINT_LENGTH</b> the length prefix of dynamic packages is written as variable length integer instead of <b>PACK_LENGTH</b> bytes:
+ * <pre> ID	  Flags Length RawData
+ * [0x0 0x0][0x0][0x1][0x0]</pre>
+ * Every byte of a variable length integer carries 7 bits of the value, starting with the lowest bits.
+ * The highest bit is set on all bytes except the last one, so lengths below 128 only need a single byte.<br>
+ * With <b>CHANNELS</b> frames of a logical channel other then the default channel carry the channel id as one byte after the flags:
+ * <pre> ID	  Flags Channel Length RawData
+ * [0x0 0x0][0x2][0x1][0x1][0x0]</pre>
+ * With <b>CORRELATION</b> requests and responses carry their correlation id as int after the flags and the channel id:
+ * <pre> ID	  Flags CorrelationID       Length RawData
+ * [0x0 0x0][0x4][0x0 0x0 0x0 0x1][0x1][0x0]</pre>
+ * With <b>CHECKSUM</b> every frame ends with the CRC32C of all of its bytes from the package id to the last byte of the payload:
+ * <pre> ID	  Flags Length RawData Checksum
+ * [0x0 0x0][0x0][0x1][0x0][0x0 0x0 0x0 0x0]</pre>
+ * */
+public final class WireFormat {
+
+	/** The protocol version implemented by this module. */
+	public static final short VERSION = 5;
+
+	/** Payloads of dynamic packages can be compressed. */
+	public static final int COMPRESSION = 0x1;
+
+	/** The length prefix of dynamic packages is a variable length integer. Since version 2. */
+	public static final int VARINT_LENGTH = 0x2;
+
+	/** Frames can be sent on logical channels. Since version 3. */
+	public static final int CHANNELS = 0x4;
+
+	/** Frames can carry a correlation id that matches responses to requests. Since version 4. */
+	public static final int CORRELATION = 0x8;
+
+	/** Every frame ends with a CRC32C checksum. Since version 5. */
+	public static final int CHECKSUM = 0x10;
+
+	/** All features supported by this module. */
+	public static final int SUPPORTED_FEATURES = COMPRESSION | VARINT_LENGTH | CHANNELS | CORRELATION | CHECKSUM;
+
+	/** The max number of bytes of a variable length integer. */
+	static final int MAX_VARINT_BYTES = 5;
+
+	/** Frame flag: the payload is compressed. */
+	static final byte FLAG_COMPRESSED = 0x1;
+
+	/** Frame flag: the frame belongs to a logical channel. The channel id follows the flag byte. */
+	static final byte FLAG_CHANNEL = 0x2;
+
+	/** Frame flag: the frame is a request. The correlation id follows the flag byte and the channel id. */
+	static final byte FLAG_REQUEST = 0x4;
+
+	/** Frame flag: the frame is the response to a request. The correlation id follows the flag byte and the channel id. */
+	static final byte FLAG_RESPONSE = 0x8;
+
+	/** All frame flags known by this module. */
+	static final byte KNOWN_FLAGS = FLAG_COMPRESSED | FLAG_CHANNEL | FLAG_REQUEST | FLAG_RESPONSE;
+
+	/** The max number of logical channels of a connection including the default channel. */
+	public static final int MAX_CHANNELS = 256;
+
+	private WireFormat() {}
+
+	/**
+	 * Returns the features that are supported by the given protocol version.
+	 * */
+	public static int getFeatures(short version) {
+		if(version < 1) return 0;
+		if(version == 1) return COMPRESSION;
+		if(version == 2) return COMPRESSION | VARINT_LENGTH;
+		if(version == 3) return COMPRESSION | VARINT_LENGTH | CHANNELS;
+		if(version == 4) return COMPRESSION | VARINT_LENGTH | CHANNELS | CORRELATION;
+		return SUPPORTED_FEATURES;
+	}
+
+	/**
+	 * Returns true when frames with the given features carry a flag byte.
+	 * */
+	static boolean hasFlags(int features) {
+		return features != 0;
+	}
+
+	/**
+	 * Returns the number of bytes needed to write the value as variable length integer.
+	 * */
+	static int varIntSize(int value) {
+		int size = 1;
+		while((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the value as variable length integer.
+	 * */
+	static void putVarInt(ByteBuffer out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte)value);
+	}
+
+}
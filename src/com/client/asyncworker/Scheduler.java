@@ -0,0 +1,51 @@
+package com.client.asyncworker;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.client.main.Client;
+import com.logger.Level;
+
+/**
+ * Shared scheduler for short one shot tasks like flush timers and timeouts.<br>
+ * All tasks are executed by a single daemon thread, so scheduled tasks should be short and must not block.
+ * */
+public final class Scheduler {
+
+	private static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+
+	private Scheduler() {}
+
+	private static ScheduledThreadPoolExecutor createExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = Client.getThreadFactory().newThread(r);
+			thread.setName("Scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+
+	/**
+	 * Schedules a task to be executed once after the given delay.<br>
+	 *
+	 * @param task The task to execute.
+	 * @param delay The delay after which the task is executed.
+	 * @param unit The unit of the delay.
+	 *
+	 * @return A future that can be used to cancel the task.
+	 * */
+	public static ScheduledFuture<?> schedule(AsyncTask task, long delay, TimeUnit unit) {
+		return EXECUTOR.schedule(() -> {
+			try {
+				task.call();
+			}catch(RuntimeException e) {
+				Client.getLogger().log(Level.ERROR, "A scheduled task caused an error while executing!");
+				Client.getLogger().log(Level.ERROR, e, e.getClass());
+			}
+		}, delay, unit);
+	}
+
+}
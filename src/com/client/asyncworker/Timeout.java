@@ -0,0 +1,73 @@
+package com.client.asyncworker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle of a task scheduled on a {@link TimingWheel}.<br>
+ * A periodic task keeps running until it is cancelled and never expires.
+ * */
+public final class Timeout {
+
+	static final int WAITING = 0;
+	static final int CANCELLED = 1;
+	static final int EXPIRED = 2;
+
+	final TimingWheel wheel;
+	final AsyncTask task;
+	final long period;
+	final TimerMode mode;
+	final AtomicInteger state = new AtomicInteger(WAITING);
+
+	// Bucket state. Only used by the thread of the wheel.
+	long deadline;
+	long remainingRounds;
+	Timeout next;
+	Timeout prev;
+	TimingWheel.Bucket bucket;
+
+	Timeout(TimingWheel wheel, AsyncTask task, long deadline) {
+		this(wheel, task, deadline, 0, null);
+	}
+
+	Timeout(TimingWheel wheel, AsyncTask task, long deadline, long period, TimerMode mode) {
+		this.wheel = wheel;
+		this.task = task;
+		this.deadline = deadline;
+		this.period = period;
+		this.mode = mode;
+	}
+
+	/**
+	 * Cancels the task if it did not run yet. A periodic task is not run again after it was cancelled.
+	 * 
+	 * @return true when the task was cancelled by this call.
+	 * */
+	public boolean cancel() {
+		if(!state.compareAndSet(WAITING, CANCELLED)) return false;
+		wheel.cancelled(this);
+		return true;
+	}
+
+	/**
+	 * Returns true when the task is run periodically.
+	 * */
+	public boolean isPeriodic() {
+		return period > 0;
+	}
+
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+
+	/**
+	 * Returns true when the task ran or is running.
+	 * */
+	public boolean isExpired() {
+		return state.get() == EXPIRED;
+	}
+
+	boolean expire() {
+		return state.compareAndSet(WAITING, EXPIRED);
+	}
+
+}
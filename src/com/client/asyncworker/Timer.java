@@ -1,17 +1,64 @@
 package com.client.asyncworker;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import com.client.main.Client;
 import com.logger.Level;
 
+/**
+ * A timer that runs a task and its listening objects every <b>period</b> milliseconds.<br>
+ * <br>
+ * Timers do not have a thread of their own. A running timer is a periodic task on a {@link TimingWheel},
+ * by default the wheel shared by the whole client, so any number of timers are driven by a single thread.
+ * The wheel only starts the ticks. The task and the listeners run on the executor of the timer,
+ * so a slow timer does not delay other timers or the timeouts on the same wheel.
+ * A tick is never started before the previous tick of the same timer has finished.<br>
+ * How the ticks are scheduled is defined by the {@link TimerMode} of the timer. The default <b>FIXED_RATE</b> does not drift
+ * by the time the task and the listeners take.
+ * Ticks on a wheel are accurate to one tick of the wheel. Rates like 60 Hz need a wheel with a tick of about one millisecond.<br>
+ * <br>
+ * Every timer counts its ticks, the ticks that finished after the next tick was already due (overruns),
+ * the ticks that were missed because a tick started more then one period late, and the lag between the deadline and the start of a tick.<br>
+ * <br>
+ * Listening objects can be subscribed and unsubscribed at any time, also while a tick is running. A running tick keeps the listeners it started with.
+ * With a tick pool the listeners are split into parts that are ticked in parallel. The tick ends only after all listeners were ticked.
+ * */
 public class Timer implements Runnable{
 
-	private boolean running = true;
+	private volatile boolean running = false;
 	private AsyncTask task = null;
-	private long period = 0;
-	private Thread workerThread;
-	private ArrayList<Tickable> listenderObjects = new ArrayList<>();
+	private volatile long period = 0;
+	private final TimingWheel wheel;
+	private Timeout timeout = null;
+	private volatile TimerMode mode = TimerMode.FIXED_RATE;
+	// Copy on write, so a tick always works on a consistent snapshot of the listeners.
+	private volatile Tickable[] listenderObjects = new Tickable[0];
+	private volatile ForkJoinPool tickPool = null;
+	private volatile int parallelThreshold = 256;
+	private volatile Executor executor = null;
+	// Ticks that are due and not finished yet. A new tick is only handed to the executor when no other tick is running.
+	private final AtomicInteger dueTicks = new AtomicInteger();
+	// Changes with every start and stop, so a tick of an old schedule does not reschedule the timer.
+	private volatile int generation = 0;
+	
+	// Statistics. Written by one tick at a time.
+	private volatile long tickCount = 0;
+	private volatile long overrunCount = 0;
+	private volatile long missedTicks = 0;
+	// Only written by the thread of the wheel.
+	private volatile long skippedTicks = 0;
+	private volatile long lastLag = 0;
+	private volatile long maxLag = 0;
 	
 	/**
 	 * Creates a new time that runs every <b>period</b> milliseconds.<br>
@@ -75,58 +122,220 @@ public class Timer implements Runnable{
 	 * @param isRunning Sets the default running state of the timer when created. If set to true the timer will start running when created.
 	 * */
 	public Timer(long period, AsyncTask task, boolean isRunning) {
+		this(period, task, isRunning, TimingWheel.getDefault());
+	}
+	
+	/**
+	 * Creates a new time that runs every <b>period</b> milliseconds on the given timing wheel.<br>
+	 * 
+	 * @param period Sets the interval for the timer to tick in milliseconds.
+	 * @param task Sets a task for the timer to execute asynchronous. Can be null.
+	 * @param isRunning Sets the default running state of the timer when created. If set to true the timer will start running when created.
+	 * @param wheel The timing wheel that drives the timer.
+	 * */
+	public Timer(long period, AsyncTask task, boolean isRunning, TimingWheel wheel) {
+		if(wheel == null)
+			throw new NullPointerException("The timing wheel can not be null!");
 		this.period = (period < 0 ? 0 : period);
 		this.task = task;
-		this.running = isRunning;
-		this.workerThread = new Thread(this);
+		this.wheel = wheel;
 		if(isRunning) this.start();
 	}
 
+	/**
+	 * Runs the timer on the calling thread until it is stopped.<br>
+	 * Used by threads created with <b>toNewThread()</b>. The ticks are scheduled with the mode of the timer like on the timing wheel.
+	 * */
 	@Override
 	public void run() {
+		this.running = true;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(period);
 		while(this.running) {
+			long sleep;
+			while((sleep = deadline - System.nanoTime()) > 0 && this.running) {
+				LockSupport.parkNanos(this, sleep);
+			}
+			if(!this.running) break;
+			long periodNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(period));
+			long start = System.nanoTime();
+			tick(this.listenderObjects);
+			long end = System.nanoTime();
+			record(start - deadline, end - start, periodNanos, mode);
+			if(mode == TimerMode.FIXED_RATE_SKIP) missedTicks += Math.max(0, end - deadline) / periodNanos;
+			deadline = mode.next(deadline, end, periodNanos);
+		}
+	}
+	
+	private void tick(Tickable[] listeners) {
+		AsyncTask task = this.task;
+		if(task != null)
+			task.call();
+		
+		ForkJoinPool pool = this.tickPool;
+		int threshold = this.parallelThreshold;
+		if(pool == null || listeners.length <= threshold) {
+			for(Tickable t : listeners) t.tick();
+		}else if(ForkJoinTask.getPool() == pool) {
+			// Already on a worker of the pool. The parts are forked and joined without blocking the worker.
+			new TickAction(listeners, 0, listeners.length, threshold).invoke();
+		}else {
+			pool.invoke(new TickAction(listeners, 0, listeners.length, threshold));
+		}
+	}
+	
+	/**
+	 * Ticks a range of listeners. Ranges larger then the threshold are split in half.
+	 * */
+	private static final class TickAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Tickable[] listeners;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		TickAction(Tickable[] listeners, int from, int to, int threshold) {
+			this.listeners = listeners;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= threshold) {
+				for(int i = from; i < to; i++) listeners[i].tick();
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new TickAction(listeners, from, middle, threshold), new TickAction(listeners, middle, to, threshold));
+		}
+
+	}
+	
+	/**
+	 * Called by the thread of the wheel when a tick is due. Only hands the tick to the executor and never blocks.<br>
+	 * When the previous tick is still running a <b>FIXED_RATE</b> tick is run right after it, a <b>FIXED_RATE_SKIP</b> tick is skipped.
+	 * */
+	private void due(long periodNanos, TimerMode mode, int generation) {
+		if(generation != this.generation) return;
+		long lag = Math.max(0, wheel.getLag());
+		long deadline = System.nanoTime() - lag;
+		if(mode == TimerMode.FIXED_RATE_SKIP) {
+			skippedTicks += lag / periodNanos;
+			if(!dueTicks.compareAndSet(0, 1)) {
+				skippedTicks++;
+				return;
+			}
+		}else if(dueTicks.getAndIncrement() != 0) {
+			return;
+		}
+		submit(deadline, periodNanos, mode, generation);
+	}
+	
+	/**
+	 * Hands the tick to the executor. A tick with more listeners then the threshold of the tick pool is run on the tick pool itself,
+	 * so the parts of the listeners are forked on the pool and no thread waits for them.
+	 * */
+	private void submit(long deadline, long periodNanos, TimerMode mode, int generation) {
+		Tickable[] listeners = this.listenderObjects;
+		ForkJoinPool pool = this.tickPool;
+		Executor executor = (pool != null && listeners.length > this.parallelThreshold) ? pool : getExecutor();
+		try {
+			executor.execute(() -> runTick(listeners, deadline, periodNanos, mode, generation));
+		}catch(RejectedExecutionException e) {
+			dueTicks.set(0);
+			Client.getLogger().log(Level.ERROR, "The executor of a timer rejected a tick!");
+			Client.getLogger().log(Level.ERROR, e, e.getClass());
+		}
+	}
+	
+	/**
+	 * Runs one tick on the executor and updates the statistics. Starts the next tick when another one became due in the meantime.
+	 * */
+	private void runTick(Tickable[] listeners, long deadline, long periodNanos, TimerMode mode, int generation) {
+		// A tick that was queued before the timer was stopped is not run anymore.
+		if(running && generation == this.generation) {
+			long start = System.nanoTime();
 			try {
-				Thread.sleep(period);
-			} catch (InterruptedException e) {
-				Client.getLogger().log(Level.WARNING, "Timer was interuped!");
+				tick(listeners);
+			}catch(RuntimeException e) {
+				Client.getLogger().log(Level.ERROR, "A timer task caused an error while executing!");
+				Client.getLogger().log(Level.ERROR, e, e.getClass());
+			}
+			record(start - deadline, System.nanoTime() - start, periodNanos, mode);
+		}
+		
+		synchronized (this) {
+			int left = dueTicks.decrementAndGet();
+			if(!running) {
+				// Drops the ticks that became due before the timer was stopped.
+				dueTicks.set(0);
+				return;
+			}
+			long currentPeriod = Math.max(wheel.getTickNanos(), TimeUnit.MILLISECONDS.toNanos(this.period));
+			if(left > 0) {
+				// Another tick became due while this one was running. It is run right away, with the schedule that is active now.
+				long next = generation == this.generation ? deadline + periodNanos : System.nanoTime();
+				submit(next, currentPeriod, this.mode, this.generation);
+			}else if(mode == TimerMode.FIXED_DELAY && generation == this.generation) {
+				timeout = wheel.schedule(() -> due(periodNanos, mode, generation), periodNanos, TimeUnit.NANOSECONDS);
 			}
-			
-			if(this.task != null)
-				this.task.call();
-			
-			listenderObjects.forEach(x -> x.tick());
 		}
 	}
 	
+	private void record(long lag, long work, long periodNanos, TimerMode mode) {
+		lag = Math.max(0, lag);
+		tickCount++;
+		lastLag = lag;
+		if(lag > maxLag) maxLag = lag;
+		if(lag + work > periodNanos) overrunCount++;
+		if(mode == TimerMode.FIXED_RATE && lag >= periodNanos) missedTicks++;
+	}
+	
 	/**
-	 * This will stop the timer after the last execution has finished.<br>
+	 * Stops the timer. No new tick is started after this call, a tick that is running right now is finished.<br>
 	 * */
-	public void stop() {
+	public synchronized void stop() {
 		this.running = false;
-		try {
-			this.workerThread.join();
-		} catch (InterruptedException e) {
-			Client.getLogger().log(Level.WARNING, "Timer was interuped while stopping!");
+		this.generation++;
+		if(timeout != null) {
+			timeout.cancel();
+			timeout = null;
 		}
 	}
 	
 	/**
-	 * This will start the timers internal thread.<br>
+	 * Starts the timer on its timing wheel. Does nothing when the timer is already running.<br>
 	 * The timer can be stopped with the <b>stop()</b> function.
 	 * */
-	public void start() {
+	public synchronized void start() {
+		if(timeout != null) return;
 		this.running = true;
-		this.workerThread.start();
+		int generation = ++this.generation;
+		long period = this.period;
+		long periodNanos = Math.max(wheel.getTickNanos(), TimeUnit.MILLISECONDS.toNanos(period));
+		TimerMode mode = this.mode;
+		if(mode == TimerMode.FIXED_DELAY) {
+			// The next tick is scheduled when the previous one finished.
+			this.timeout = wheel.schedule(() -> due(periodNanos, mode, generation), period, TimeUnit.MILLISECONDS);
+		}else {
+			this.timeout = wheel.schedule(() -> due(periodNanos, mode, generation), period, period, TimeUnit.MILLISECONDS, mode);
+		}
 	}
 	
 	/**
 	 * This will return a new thread that sets <b>this</b> timer as the runnable.<br>
-	 * The thread can then be managed external.<br>
+	 * The thread can then be managed external and does not use the timing wheel.<br>
 	 * <br>
-	 * The <b>start()</b> and <b>stop()</b> functions will no longer work when using an external thread.
+	 * The thread runs until <b>stop()</b> is called. <b>start()</b> must not be used together with an external thread.
+	 * 
+	 * @deprecated Timers run on a shared timing wheel. Use <b>start()</b> instead.
 	 * */
+	@Deprecated
 	public Thread toNewThread() {
-		return new Thread(this);
+		return Client.getThreadFactory().newThread(this);
 	}
 
 	/**
@@ -151,17 +360,170 @@ public class Timer implements Runnable{
 	}
 
 	/**
-	 * Sets the ticking interval for the timer in milliseconds.
+	 * Sets the ticking interval for the timer in milliseconds.<br>
+	 * A running timer is rescheduled with the new interval.
+	 * */
+	public synchronized void setPeriod(long perioud) {
+		this.period = (perioud < 0 ? 0 : perioud);
+		if(timeout != null) {
+			timeout.cancel();
+			timeout = null;
+			start();
+		}
+	}
+	
+	/**
+	 * Returns how the ticks of the timer are scheduled.
+	 * */
+	public TimerMode getMode() {
+		return mode;
+	}
+	
+	/**
+	 * Sets how the ticks of the timer are scheduled.<br>
+	 * A running timer is rescheduled with the new mode.
+	 * */
+	public synchronized void setMode(TimerMode mode) {
+		if(mode == null)
+			throw new NullPointerException("The mode can not be null!");
+		this.mode = mode;
+		if(timeout != null) {
+			timeout.cancel();
+			timeout = null;
+			start();
+		}
+	}
+	
+	/**
+	 * Returns the number of ticks that were run.
+	 * */
+	public long getTickCount() {
+		return tickCount;
+	}
+	
+	/**
+	 * Returns the number of ticks that finished after the next tick was already due.
+	 * */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+	
+	/**
+	 * Returns the number of missed ticks.<br>
+	 * With <b>FIXED_RATE</b> these are the ticks that started more then one period late to catch up,
+	 * with <b>FIXED_RATE_SKIP</b> the ticks that were skipped because they were due before the previous tick had finished.
+	 * <b>FIXED_DELAY</b> does not miss ticks.
+	 * */
+	public long getMissedTicks() {
+		return missedTicks + skippedTicks;
+	}
+	
+	/**
+	 * Returns how many nanoseconds the last tick started after its deadline.
+	 * */
+	public long getLastLag() {
+		return lastLag;
+	}
+	
+	/**
+	 * Returns the largest lag of a tick in nanoseconds.
+	 * */
+	public long getMaxLag() {
+		return maxLag;
+	}
+	
+	/**
+	 * Returns the executor that runs the ticks of the timer.
+	 * */
+	public Executor getExecutor() {
+		Executor executor = this.executor;
+		return executor != null ? executor : DefaultExecutor.EXECUTOR;
+	}
+	
+	/**
+	 * Sets the executor that runs the task and the listeners of the timer.<br>
+	 * By default the ticks run on a shared pool of daemon threads created with the thread factory of the client.
+	 * The pool grows when ticks of several timers run at the same time, so a slow timer does not delay other timers.
+	 * 
+	 * @param executor The executor for the ticks. Null uses the default pool.
+	 * */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Returns the timing wheel that drives the timer.
 	 * */
-	public void setPeriod(long perioud) {
-		this.period = perioud;
+	public TimingWheel getWheel() {
+		return wheel;
 	}
 	
 	/**
 	 * Adds a listener object to the timer that will be called after the timer task was executed.
 	 * */
-	public void subscribe(Tickable t) {
-		this.listenderObjects.add(t);
+	public synchronized void subscribe(Tickable t) {
+		if(t == null)
+			throw new NullPointerException("The listener can not be null!");
+		Tickable[] listeners = Arrays.copyOf(this.listenderObjects, this.listenderObjects.length + 1);
+		listeners[listeners.length - 1] = t;
+		this.listenderObjects = listeners;
+	}
+	
+	/**
+	 * Removes a listener object from the timer.
+	 * 
+	 * @return true when the listener was subscribed.
+	 * */
+	public synchronized boolean unsubscribe(Tickable t) {
+		Tickable[] listeners = this.listenderObjects;
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] != t) continue;
+			Tickable[] out = new Tickable[listeners.length - 1];
+			System.arraycopy(listeners, 0, out, 0, i);
+			System.arraycopy(listeners, i + 1, out, i, out.length - i);
+			this.listenderObjects = out;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the number of subscribed listener objects.
+	 * */
+	public int getSubscriberCount() {
+		return listenderObjects.length;
+	}
+	
+	/**
+	 * Ticks the listener objects in parallel on the given pool.<br>
+	 * The listeners are split into parts of at most <b>threshold</b> listeners. A tick with less listeners is run on the executor of the timer.
+	 * A tick with more listeners runs on the pool as a whole, and the parts are forked there. The next tick is not started
+	 * before all parts are done, so ticks never overlap.<br>
+	 * Listeners ticked in parallel must not depend on each other.
+	 * 
+	 * @param pool The pool for the listeners, for example <b>ForkJoinPool.commonPool()</b>. Null ticks all listeners on the thread of the timer.
+	 * @param threshold The max number of listeners ticked as one part.
+	 * */
+	public void setTickPool(ForkJoinPool pool, int threshold) {
+		if(threshold < 1)
+			throw new IllegalArgumentException("The threshold has to be at least 1!");
+		this.parallelThreshold = threshold;
+		this.tickPool = pool;
+	}
+	
+	public ForkJoinPool getTickPool() {
+		return tickPool;
+	}
+	
+	private static final class DefaultExecutor {
+
+		static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+			Thread thread = Client.getThreadFactory().newThread(r);
+			thread.setName("Timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
 	}
 
 }
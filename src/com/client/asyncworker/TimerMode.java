@@ -0,0 +1,33 @@
+package com.client.asyncworker;
+
+/**
+ * Defines how the next tick of a periodic task is scheduled. All times are measured with <b>System.nanoTime()</b>.
+ * */
+public enum TimerMode {
+	/** Ticks are scheduled <b>period</b> after the previous deadline. Missed ticks are run one after another until the task is back on schedule. */
+	FIXED_RATE,
+	/** Ticks are scheduled <b>period</b> after the previous deadline. Missed ticks are skipped and the next tick keeps the original phase. */
+	FIXED_RATE_SKIP,
+	/** Ticks are scheduled <b>period</b> after the end of the previous tick, so the interval is the period plus the work time. */
+	FIXED_DELAY;
+
+	/**
+	 * Returns the deadline of the next tick.
+	 * 
+	 * @param deadline The deadline of the tick that just ran.
+	 * @param now The time the tick finished.
+	 * @param period The period of the task.
+	 * */
+	long next(long deadline, long now, long period) {
+		switch(this) {
+		case FIXED_RATE_SKIP:
+			long next = deadline + period;
+			if(next <= now) next += ((now - next) / period + 1) * period;
+			return next;
+		case FIXED_DELAY:
+			return now + period;
+		default:
+			return deadline + period;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package com.client.asyncworker;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.client.main.Client;
+import com.logger.Level;
+
+/**
+ * Hashed timing wheel that drives any number of timeouts from a single thread.<br>
+ * <br>
+ * The wheel is split into <b>wheelSize</b> buckets that each cover one tick. A timeout is put into the bucket of its deadline
+ * and remembers how many full turns of the wheel are left until it is due, so scheduling and cancelling are O(1)
+ * no matter how many timeouts are waiting.<br>
+ * The ticks are measured from the start of the wheel, so the wheel does not drift when tasks take time.
+ * Timeouts are run at most one tick after their deadline.<br>
+ * Periodic tasks are put back into the wheel after every run. How their next deadline is computed is defined by their {@link TimerMode}.<br>
+ * <br>
+ * All tasks are executed by the thread of the wheel, so they should be short and must not block.
+ * A blocking or long task delays every other timeout of the wheel. Such work has to be handed off to an executor by the task,
+ * like {@link Timer} does with its ticks.
+ * */
+public class TimingWheel {
+
+	private static final TimingWheel DEFAULT = new TimingWheel(10, TimeUnit.MILLISECONDS, 512);
+
+	private final long tickNanos;
+	private final Bucket[] buckets;
+	private final int mask;
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private volatile boolean started = false;
+	private long startTime;
+	private long tick = 0;
+	private Timeout running = null;
+
+	/**
+	 * Creates a timing wheel. The thread of the wheel is started with the first scheduled timeout.
+	 * 
+	 * @param tickDuration The duration of one tick. Timeouts are rounded up to full ticks.
+	 * @param unit The unit of the tick duration.
+	 * @param wheelSize The number of buckets. Is rounded up to the next power of 2.
+	 * */
+	public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+		if(tickDuration <= 0 || wheelSize <= 0)
+			throw new IllegalArgumentException("The tick duration and the wheel size have to be larger then 0!");
+		this.tickNanos = unit.toNanos(tickDuration);
+		int size = Integer.highestOneBit(Math.min(wheelSize, 1 << 30));
+		if(size < wheelSize) size <<= 1;
+		this.buckets = new Bucket[size];
+		for(int i = 0; i < size; i++) buckets[i] = new Bucket();
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the timing wheel shared by the whole client. It ticks every 10 milliseconds.
+	 * */
+	public static TimingWheel getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Schedules a task to be executed once after the given delay.
+	 * 
+	 * @param task The task to execute.
+	 * @param delay The delay after which the task is executed.
+	 * @param unit The unit of the delay.
+	 * 
+	 * @return A handle that can be used to cancel the task.
+	 * */
+	public Timeout schedule(AsyncTask task, long delay, TimeUnit unit) {
+		if(task == null) throw new NullPointerException("The task can not be null!");
+		start();
+		Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Schedules a task to be executed periodically at a fixed rate until the returned handle is cancelled.<br>
+	 * Same as <b>schedule(task, initialDelay, period, unit, TimerMode.FIXED_RATE)</b>.
+	 * */
+	public Timeout scheduleAtFixedRate(AsyncTask task, long initialDelay, long period, TimeUnit unit) {
+		return schedule(task, initialDelay, period, unit, TimerMode.FIXED_RATE);
+	}
+
+	/**
+	 * Schedules a task to be executed periodically until the returned handle is cancelled.<br>
+	 * With <b>FIXED_RATE</b> the deadlines are <b>initialDelay + n * period</b>, so the execution time of the task does not add up.
+	 * 
+	 * @param task The task to execute.
+	 * @param initialDelay The delay until the first execution.
+	 * @param period The time between two executions. Periods shorter then one tick are rounded up to one tick.
+	 * @param unit The unit of the delay and the period.
+	 * @param mode Defines how the next execution is scheduled.
+	 * 
+	 * @return A handle that can be used to stop the task.
+	 * */
+	public Timeout schedule(AsyncTask task, long initialDelay, long period, TimeUnit unit, TimerMode mode) {
+		if(task == null) throw new NullPointerException("The task can not be null!");
+		if(mode == null) throw new NullPointerException("The mode can not be null!");
+		start();
+		Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(initialDelay)),
+				Math.max(tickNanos, unit.toNanos(period)), mode);
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Returns how many nanoseconds the task that is running right now is behind its deadline.<br>
+	 * Only valid on the thread of the wheel while a task is running.
+	 * */
+	long getLag() {
+		return running == null ? 0 : System.nanoTime() - startTime - running.deadline;
+	}
+
+	private void start() {
+		if(started) return;
+		synchronized (buckets) {
+			if(started) return;
+			startTime = System.nanoTime();
+			started = true;
+			Thread thread = Client.getThreadFactory().newThread(this::run);
+			thread.setName("TimingWheel");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	void cancelled(Timeout timeout) {
+		cancelled.add(timeout);
+	}
+
+	private void run() {
+		while(true) {
+			long deadline = (tick + 1) * tickNanos;
+			long sleep;
+			while((sleep = deadline - (System.nanoTime() - startTime)) > 0) {
+				LockSupport.parkNanos(this, sleep);
+			}
+			removeCancelled();
+			transferAdded();
+			expire(buckets[(int)(tick & mask)]);
+			tick++;
+		}
+	}
+
+	private void removeCancelled() {
+		Timeout timeout;
+		while((timeout = cancelled.poll()) != null) {
+			if(timeout.bucket != null) timeout.bucket.remove(timeout);
+		}
+	}
+
+	private void transferAdded() {
+		// Limits the work per tick, so a flood of new timeouts can not stall the wheel.
+		for(int i = 0; i < 100000; i++) {
+			Timeout timeout = added.poll();
+			if(timeout == null) return;
+			if(timeout.isCancelled()) continue;
+			long ticks = Math.max((timeout.deadline + tickNanos - 1) / tickNanos - 1, tick);
+			timeout.remainingRounds = (ticks - tick) / buckets.length;
+			buckets[(int)(ticks & mask)].add(timeout);
+		}
+	}
+
+	private void expire(Bucket bucket) {
+		Timeout timeout = bucket.head;
+		while(timeout != null) {
+			Timeout next = timeout.next;
+			if(timeout.remainingRounds <= 0) {
+				bucket.remove(timeout);
+				if(timeout.period > 0) {
+					if(!timeout.isCancelled()) {
+						run(timeout);
+						timeout.deadline = timeout.mode.next(timeout.deadline, System.nanoTime() - startTime, timeout.period);
+						// Put back through the queue, so it is not picked up again by this loop.
+						if(!timeout.isCancelled()) added.add(timeout);
+					}
+				}else if(timeout.expire()) {
+					run(timeout);
+				}
+			}else if(timeout.isCancelled()) {
+				bucket.remove(timeout);
+			}else {
+				timeout.remainingRounds--;
+			}
+			timeout = next;
+		}
+	}
+
+	private void run(Timeout timeout) {
+		running = timeout;
+		try {
+			timeout.task.call();
+		}catch(RuntimeException e) {
+			Client.getLogger().log(Level.ERROR, "A timeout task caused an error while executing!");
+			Client.getLogger().log(Level.ERROR, e, e.getClass());
+		}finally {
+			running = null;
+		}
+	}
+
+	/**
+	 * Returns the duration of a tick in nanoseconds.
+	 * */
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	static final class Bucket {
+
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if(head == null) {
+				head = tail = timeout;
+			}else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if(timeout.prev != null) timeout.prev.next = timeout.next;
+			else head = timeout.next;
+			if(timeout.next != null) timeout.next.prev = timeout.prev;
+			else tail = timeout.prev;
+			timeout.next = null;
+			timeout.prev = null;
+			timeout.bucket = null;
+		}
+
+	}
+
+}
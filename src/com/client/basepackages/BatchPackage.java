@@ -0,0 +1,49 @@
+package com.client.basepackages;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.client.packageing.DataPackage;
+import com.client.packageing.annotations.DataPackageConstructor;
+import com.client.packageing.annotations.DataPackageDynamic;
+import com.client.packageing.annotations.DataPackageID;
+import com.client.packageing.annotations.DataPackageLength;
+
+/**
+ * Container for many small packages that are sent as one frame.<br>
+ * <br>
+ * The raw data is the packed form of the contained packages one after another:
+ * <pre> ID	  Length	   RawData  ID	  RawData
+ * [0x0 0x9][0x0 0x0 0x0 0x5][0x0 0x1][0x0 0x2][0x0]</pre>
+ * A received batch is expanded by the connection and every contained package is handled like a package received on its own.
+ * */
+public class BatchPackage extends DataPackage{
+
+	@DataPackageDynamic
+	public static boolean IS_DYNAMIC_LENGTH = true;
+	
+	@DataPackageLength
+	public static short PACK_LENGTH = (short)4;
+	
+	@DataPackageID
+	public static byte[] ID = new byte[] {(byte)0x0, (byte)0x9};
+	
+	@DataPackageConstructor(DATA = true)
+	public BatchPackage(byte[] byteDataRaw) {
+		super(PACK_LENGTH, IS_DYNAMIC_LENGTH, byteDataRaw);
+		this.setId(ID);
+	}
+	
+	public BatchPackage(List<? extends DataPackage> packages) {
+		this(pack(packages));
+	}
+	
+	private static byte[] pack(List<? extends DataPackage> packages) {
+		int size = 0;
+		for(DataPackage data : packages) size += data.getFrameSize();
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for(DataPackage data : packages) data.writeTo(buffer);
+		return buffer.array();
+	}
+	
+}
@@ -0,0 +1,51 @@
+package com.client.basepackages;
+
+import java.nio.ByteBuffer;
+
+import com.client.packageing.DataPackage;
+import com.client.packageing.annotations.DataPackageConstructor;
+import com.client.packageing.annotations.DataPackageDynamic;
+import com.client.packageing.annotations.DataPackageID;
+import com.client.packageing.annotations.DataPackageLength;
+
+public class ProtocolHandshake extends DataPackage{
+
+	/** Sent by the side that starts the handshake. Contains the offered features. */
+	public static final byte OFFER = 0x0;
+	/** Reply to an offer. Contains the features both sides support. */
+	public static final byte ANSWER = 0x1;
+	/** Confirms an answer. Contains the negotiated features. */
+	public static final byte ACK = 0x2;
+	
+	@DataPackageDynamic
+	public static boolean IS_DYNAMIC_LENGTH = false;
+	
+	@DataPackageLength
+	public static short PACK_LENGTH = (short)7;
+	
+	@DataPackageID
+	public static byte[] ID = new byte[] {(byte)0x0, (byte)0x7};
+	
+	@DataPackageConstructor(DATA = true)
+	public ProtocolHandshake(byte[] byteDataRaw) {
+		super(PACK_LENGTH, IS_DYNAMIC_LENGTH, byteDataRaw);
+		this.setId(ID);
+	}
+	
+	public ProtocolHandshake(short version, int features, byte type) {
+		this(ByteBuffer.allocate(PACK_LENGTH).putShort(version).putInt(features).put(type).array());
+	}
+	
+	public short getVersion() {
+		return ByteBuffer.wrap(this.getByteDataRaw()).getShort(0);
+	}
+	
+	public int getFeatures() {
+		return ByteBuffer.wrap(this.getByteDataRaw()).getInt(2);
+	}
+	
+	public byte getType() {
+		return this.getByteDataRaw()[6];
+	}
+	
+}
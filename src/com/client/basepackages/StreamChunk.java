@@ -0,0 +1,97 @@
+package com.client.basepackages;
+
+import java.nio.ByteBuffer;
+
+import com.client.packageing.DataPackage;
+import com.client.packageing.annotations.DataPackageConstructor;
+import com.client.packageing.annotations.DataPackageDynamic;
+import com.client.packageing.annotations.DataPackageID;
+import com.client.packageing.annotations.DataPackageLength;
+
+/**
+ * A part of a stream that is sent with <b>ClientConnection.sendStream()</b>.<br>
+ * <br>
+ * The raw data starts with the stream id and the chunk type followed by the data of the chunk:
+ * <pre> StreamID	        Type  Data
+ * [0x0 0x0 0x0 0x1][0x0][...]</pre>
+ * */
+public class StreamChunk extends DataPackage{
+
+	/** A part of the stream data. Sent by the sending side. */
+	public static final byte DATA = 0x0;
+	/** The stream ended. Sent by the sending side. */
+	public static final byte END = 0x1;
+	/** The sending side aborted the stream. */
+	public static final byte ABORT = 0x2;
+	/** The receiving side does not want any more data of the stream. */
+	public static final byte CANCEL = 0x3;
+	/** The receiving side allows the sending side to send more chunks. The data contains the number of chunks as int. */
+	public static final byte CREDIT = 0x4;
+	
+	/** Number of bytes in front of the data of a chunk. */
+	public static final int HEADER_LENGTH = 5;
+	
+	@DataPackageDynamic
+	public static boolean IS_DYNAMIC_LENGTH = true;
+	
+	@DataPackageLength
+	public static short PACK_LENGTH = (short)4;
+	
+	@DataPackageID
+	public static byte[] ID = new byte[] {(byte)0x0, (byte)0x8};
+	
+	@DataPackageConstructor(DATA = true)
+	public StreamChunk(byte[] byteDataRaw) {
+		super(PACK_LENGTH, IS_DYNAMIC_LENGTH, byteDataRaw);
+		this.setId(ID);
+	}
+	
+	public StreamChunk(int streamId, byte type) {
+		this(streamId, type, null, 0, 0);
+	}
+	
+	public StreamChunk(int streamId, byte type, byte[] data, int offset, int length) {
+		this(create(streamId, type, data, offset, length));
+	}
+	
+	public static StreamChunk credit(int streamId, int chunks) {
+		return new StreamChunk(ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES).putInt(streamId).put(CREDIT).putInt(chunks).array());
+	}
+	
+	private static byte[] create(int streamId, byte type, byte[] data, int offset, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + length).putInt(streamId).put(type);
+		if(length > 0) buffer.put(data, offset, length);
+		return buffer.array();
+	}
+	
+	/**
+	 * Returns true when the raw data is long enough for the chunk header.
+	 * */
+	public boolean isValid() {
+		byte[] raw = this.getByteDataRaw();
+		return raw != null && raw.length >= HEADER_LENGTH && (getType() != CREDIT || raw.length >= HEADER_LENGTH + Integer.BYTES);
+	}
+	
+	public int getStreamId() {
+		return ByteBuffer.wrap(this.getByteDataRaw()).getInt(0);
+	}
+	
+	public byte getType() {
+		return this.getByteDataRaw()[4];
+	}
+	
+	/**
+	 * Returns the number of data bytes of the chunk. The data starts at <b>HEADER_LENGTH</b> in the raw data.
+	 * */
+	public int getDataLength() {
+		return this.getByteDataRaw().length - HEADER_LENGTH;
+	}
+	
+	/**
+	 * Returns the number of chunks granted by a <b>CREDIT</b> chunk.
+	 * */
+	public int getCredits() {
+		return ByteBuffer.wrap(this.getByteDataRaw()).getInt(HEADER_LENGTH);
+	}
+	
+}
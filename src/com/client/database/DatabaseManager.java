@@ -97,7 +97,7 @@ public class DatabaseManager {
 	}
 	
 	public void startAsyncWorker() {
-		SqlStatementThread = new Thread(() -> {
+		SqlStatementThread = Client.getThreadFactory().newThread(() -> {
 
 			Connection conn;
 			try {
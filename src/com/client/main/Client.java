@@ -1,20 +1,41 @@
 package com.client.main;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import com.client.ClientConnection;
+import com.client.ConnectionSelector;
+import com.client.DispatchOrdering;
+import com.client.HeartbeatManager;
+import com.client.ReplayBuffer;
+import com.client.WireFormat;
+import com.client.asyncworker.Timeout;
+import com.client.asyncworker.TimingWheel;
+import com.client.basepackages.ReconnectPackage;
 import com.client.ClientDisconnectCallback;
 import com.client.ClientPackageReceiveCallback;
+import com.client.ClientStreamCallback;
 import com.client.ClientTimeOutCallback;
+import com.client.ClientWritabilityCallback;
+import com.client.packageing.BufferPool;
 import com.client.packageing.DataPackage;
 import com.client.packageing.DefaultPackageManager;
 import com.client.packageing.PackageManager;
 import com.client.packageing.PackageRegistrationManager;
 import com.client.packageing.UnknownPackageCallback;
+import com.logger.Level;
 import com.logger.Logger;
 import com.logger.PrintMode;
 import com.logger.PrintingType;
@@ -23,12 +44,15 @@ public class Client {
 
 	public static Logger logger = new Logger(PrintingType.Console, PrintMode.EVENT);
 	private static int maxPackageSize = 2048;	
+	private static int maxUncompressedPackageSize = 65536;
+	private static ThreadFactory threadFactory = Thread::new;
 	private int clientTimeOut = -1;
 
 	private PackageManager defaultPackageManager;
 	private final PackageRegistrationManager packageRegistrationManager;
 	
 	private ClientConnection connection;
+	private ConnectionSelector connectionSelector = null;
 	
 	private InetAddress adderss;
 	private int port;
@@ -37,6 +61,20 @@ public class Client {
 	private UnknownPackageCallback unknownPackageCallback = null;
 	private ClientTimeOutCallback clientTimeOutCallback = null;
 	private ClientDisconnectCallback clientDisconnectCallback = null;
+	private ClientWritabilityCallback clientWritabilityCallback = null;
+	private ClientStreamCallback clientStreamCallback = null;
+	private BufferPool receiveBufferPool = null;
+	private Executor dispatchExecutor = null;
+	private DispatchOrdering dispatchOrdering = DispatchOrdering.PER_CONNECTION;
+	private int protocolFeatures = 0;
+	private ReconnectPolicy reconnectPolicy = null;
+	private HeartbeatManager heartbeatManager = null;
+	private ReplayBuffer replayBuffer = null;
+	private byte[] sessionToken = null;
+	private volatile boolean closed = false;
+	private boolean reconnecting = false;
+	private int reconnectAttempt = 0;
+	private Timeout reconnectTimeout = null;
 	
 	public Client(InetAddress address, int port) {
 		this(address, port, null);
@@ -50,29 +88,140 @@ public class Client {
 	}
 	
 	public boolean connect() {
-		if(this.connection != null)
-			return false;
-		Socket sock;
-		try {
-			sock = new Socket(this.adderss, port);
-			if(this.clientTimeOut > 0) sock.setSoTimeout(this.clientTimeOut);
-		} catch (IOException e) {
-			return false;
+		synchronized (this) {
+			if(this.connection != null && this.connection.isActive())
+				return false;
+			this.closed = false;
+		}
+		return open();
+	}
+	
+	/**
+	 * Opens a new connection. After a reconnect the session token is sent first and the replay buffer is sent after it.
+	 * */
+	private boolean open() {
+		ClientConnection connection;
+		if(this.connectionSelector != null) {
+			SocketChannel channel;
+			try {
+				channel = SocketChannel.open(new InetSocketAddress(this.adderss, port));
+			} catch (IOException e) {
+				return false;
+			}
+			connection = new ClientConnection(channel, this.defaultPackageManager, this.connectionSelector);
+		}else {
+			Socket sock;
+			try {
+				sock = new Socket(this.adderss, port);
+				if(this.clientTimeOut > 0 && this.heartbeatManager == null) sock.setSoTimeout(this.clientTimeOut);
+			} catch (IOException e) {
+				return false;
+			}
+			connection = new ClientConnection(sock, this.defaultPackageManager);
+		}
+		connection.setClientPackageReceiveCallback(callback);
+		connection.setUnknownPackageCallback(unknownPackageCallback);
+		connection.setClientTimeOutCallback(clientTimeOutCallback);
+		connection.setClientDisconnectCallback(this::connectionLost);
+		connection.setClientWritabilityCallback(clientWritabilityCallback);
+		connection.setClientStreamCallback(clientStreamCallback);
+		connection.setReceiveBufferPool(receiveBufferPool);
+		connection.setDispatchExecutor(dispatchExecutor, dispatchOrdering);
+		connection.setOfferedFeatures(protocolFeatures);
+		connection.setPackageManager(defaultPackageManager);
+		connection.setReplayBuffer(replayBuffer);
+		synchronized (this) {
+			this.connection = connection;
+			connection.enable();
+			if(protocolFeatures != 0) connection.startHandshake();
+			if(heartbeatManager != null) heartbeatManager.add(connection);
+			if(reconnecting) {
+				if(sessionToken != null) connection.sendAsync(new ReconnectPackage(sessionToken));
+				reconnecting = false;
+				logger.log(Level.INFO, "Reconnected after " + reconnectAttempt + " attempts.");
+			}
+			if(replayBuffer != null) replayBuffer.replayTo(connection);
 		}
-		this.connection = new ClientConnection(sock, this.defaultPackageManager);
-		this.connection.setClientPackageReceiveCallback(callback);
-		this.connection.setUnknownPackageCallback(unknownPackageCallback);
-		this.connection.setClientTimeOutCallback(clientTimeOutCallback);
-		this.connection.setClientDisconnectCallback(clientDisconnectCallback);
-		this.connection.setPackageManager(defaultPackageManager);
-		this.connection.enable();
 		return true;
 	}
 	
+	/**
+	 * Called when a connection of this client was closed. Starts reconnecting when a reconnect policy is set.
+	 * */
+	private void connectionLost(ClientConnection connection) {
+		if(this.clientDisconnectCallback != null) clientDisconnectCallback.call(connection);
+		synchronized (this) {
+			if(closed || reconnectPolicy == null || connection != this.connection || reconnecting) return;
+			if(replayBuffer != null) replayBuffer.detach();
+			if(connection.getSessionToken() != null) this.sessionToken = connection.getSessionToken();
+			reconnecting = true;
+			reconnectAttempt = 0;
+			logger.log(Level.INFO, "Connection lost! Reconnecting.");
+			scheduleReconnect();
+		}
+	}
+	
+	/**
+	 * Schedules the next reconnect attempt with the delay of the reconnect policy. Has to be called while holding the lock of the client.
+	 * */
+	private void scheduleReconnect() {
+		ReconnectPolicy policy = this.reconnectPolicy;
+		if(closed || policy == null) {
+			reconnecting = false;
+			return;
+		}
+		if(policy.getMaxAttempts() >= 0 && reconnectAttempt >= policy.getMaxAttempts()) {
+			reconnecting = false;
+			logger.log(Level.ERROR, "Could not reconnect after " + reconnectAttempt + " attempts!");
+			if(replayBuffer != null) replayBuffer.fail(new IOException("Could not reconnect!"));
+			return;
+		}
+		long delay = policy.getDelayNanos(reconnectAttempt++);
+		// The wheel thread must not block, so the connection is opened on a thread of its own.
+		reconnectTimeout = TimingWheel.getDefault().schedule(() -> threadFactory.newThread(this::reconnect).start(), delay, TimeUnit.NANOSECONDS);
+	}
+	
+	private void reconnect() {
+		if(closed) return;
+		if(open()) return;
+		synchronized (this) {
+			logger.log(Level.DEBUG, "Reconnect attempt " + reconnectAttempt + " failed.");
+			scheduleReconnect();
+		}
+	}
+	
+	/**
+	 * Keeps the package in the replay buffer while the client is reconnecting.
+	 * 
+	 * @return The future of the kept package or null when the client is not reconnecting.
+	 * */
+	private CompletableFuture<Void> replay(DataPackage data) {
+		ReplayBuffer replayBuffer = this.replayBuffer;
+		if(replayBuffer == null || closed) return null;
+		synchronized (this) {
+			if(!reconnecting) return null;
+		}
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		if(!replayBuffer.offer(data, future)) future.completeExceptionally(new RejectedExecutionException("Replay buffer is full!"));
+		return future;
+	}
+	
+	/**
+	 * Closes the connection and stops reconnecting. Packages kept for a replay are failed.
+	 * */
 	public void disable() {
-		if(this.connection != null) {
-			this.connection.disable();
+		ClientConnection connection;
+		synchronized (this) {
+			this.closed = true;
+			this.reconnecting = false;
+			if(reconnectTimeout != null) reconnectTimeout.cancel();
+			reconnectTimeout = null;
+			connection = this.connection;
+		}
+		if(connection != null) {
+			connection.disable();
 		}
+		if(replayBuffer != null) replayBuffer.fail(new IOException("Client was disabled!"));
 	}
 	
 	/**
@@ -81,8 +230,101 @@ public class Client {
 	 * @param data
 	 * */
 	public void send(DataPackage data) {
+		ClientConnection connection = this.connection;
+		if(connection != null && !connection.isActive() && replay(data) != null) return;
+		if(connection != null) {
+			connection.send(data);
+		}
+	}
+	
+	/**
+	 * Queues a data package to be sent by the writer of the connection.<br>
+	 * See {@link ClientConnection#sendAsync(DataPackage)}
+	 * 
+	 * @param data
+	 * 
+	 * @return A future that is completed when the package was written.
+	 * */
+	public CompletableFuture<Void> sendAsync(DataPackage data) {
+		ClientConnection connection = this.connection;
+		if(connection != null && !connection.isActive()) {
+			CompletableFuture<Void> future = replay(data);
+			if(future != null) return future;
+		}
+		if(this.connection == null) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException("Client is not connected!"));
+			return future;
+		}
+		return this.connection.sendAsync(data);
+	}
+	
+	/**
+	 * Sends a package as request and returns a future for the response.<br>
+	 * See {@link ClientConnection#request(DataPackage, Duration)}
+	 * 
+	 * @param data The request to send.
+	 * @param timeout The time to wait for the response.
+	 * 
+	 * @return A future that is completed with the response.
+	 * */
+	public CompletableFuture<DataPackage> request(DataPackage data, Duration timeout) {
+		if(this.connection == null) {
+			CompletableFuture<DataPackage> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException("Client is not connected!"));
+			return future;
+		}
+		return this.connection.request(data, timeout);
+	}
+	
+	/**
+	 * Sends the response to a request received from the server.<br>
+	 * See {@link ClientConnection#respond(DataPackage, DataPackage)}
+	 * */
+	public CompletableFuture<Void> respond(DataPackage request, DataPackage response) {
+		if(this.connection == null) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException("Client is not connected!"));
+			return future;
+		}
+		return this.connection.respond(request, response);
+	}
+	
+	/**
+	 * Sends the data of the input stream as stream.<br>
+	 * See {@link ClientConnection#sendStream(InputStream)}
+	 * 
+	 * @param in The data to send.
+	 * 
+	 * @return A future that is completed when the whole stream was written.
+	 * */
+	public CompletableFuture<Void> sendStream(InputStream in) {
+		if(this.connection == null) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException("Client is not connected!"));
+			return future;
+		}
+		return this.connection.sendStream(in);
+	}
+	
+	/**
+	 * Buffers a data package without sending it right away.<br>
+	 * See {@link ClientConnection#write(DataPackage)}
+	 * 
+	 * @param data
+	 * */
+	public void write(DataPackage data) {
+		if(this.connection != null) {
+			this.connection.write(data);
+		}
+	}
+	
+	/**
+	 * Sends all buffered data packages.
+	 * */
+	public void flush() {
 		if(this.connection != null) {
-			this.connection.send(data);
+			this.connection.flush();
 		}
 	}
 	
@@ -98,14 +340,203 @@ public class Client {
 		Client.maxPackageSize = maxPackageSize;
 	}
 
+	public static int getMaxUncompressedPackageSize() {
+		return maxUncompressedPackageSize;
+	}
+
+	/**
+	 * Sets the max size of a compressed payload after it was decompressed.<br>
+	 * The compressed payload itself is still limited by the max package size.
+	 * */
+	public static void setMaxUncompressedPackageSize(int maxUncompressedPackageSize) {
+		Client.maxUncompressedPackageSize = maxUncompressedPackageSize;
+	}
+
+	public static ThreadFactory getThreadFactory() {
+		return threadFactory;
+	}
+
+	/**
+	 * Sets the thread factory that is used for all threads created by the client module.<br>
+	 * This includes the reader and writer threads of blocking connections, the selector threads, the threads of outgoing streams,
+	 * the shared {@link TimingWheel} and {@link com.client.asyncworker.Scheduler} threads, timers and the async database worker.<br>
+	 * Received packages are relayed to the callback functions on the reader thread, so the callbacks also run on threads of this factory.<br>
+	 * <br>
+	 * Only threads that are created after this call are affected. The selector, wheel and scheduler threads are created once on first use,
+	 * so the factory should be set before the first connection is opened.
+	 * 
+	 * @param threadFactory The thread factory. <b>Can not be null!</b>
+	 * 
+	 * @throws NullPointerException When threadFactory == null
+	 * */
+	public static void setThreadFactory(ThreadFactory threadFactory) {
+		if(threadFactory == null)
+			throw new NullPointerException("Thread factory can not be null!");
+		Client.threadFactory = threadFactory;
+	}
+	
+	/**
+	 * Sets the thread factory to create virtual threads.<br>
+	 * Virtual threads are available on Java 21 and newer. A blocking connection then only costs a few kilobytes of heap instead of a platform thread,
+	 * so a single JVM can hold many thousands of connections.<br>
+	 * <br>
+	 * When virtual threads are not available the thread factory is not changed.
+	 * 
+	 * @return true when virtual threads are used from now on.
+	 * */
+	public static boolean useVirtualThreads() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Object factory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+			setThreadFactory((ThreadFactory) factory);
+			return true;
+		} catch (ReflectiveOperationException e) {
+			logger.log(Level.WARNING, "Virtual threads are not supported by this java version! Using platform threads.");
+			return false;
+		}
+	}
+
 	public int getClientTimeOut() {
 		return clientTimeOut;
 	}
 
+	/**
+	 * Sets the read timeout in milliseconds of blocking connections.<br>
+	 * The timeout is not used when a heartbeat manager is set. The heartbeat manager detects idle connections instead.
+	 * */
 	public void setClientTimeOut(int clientTimeOut) {
 		this.clientTimeOut = clientTimeOut;
 	}
 
+	public ConnectionSelector getConnectionSelector() {
+		return connectionSelector;
+	}
+
+	/**
+	 * Sets the connection selector that will drive the connection of this client.<br>
+	 * When a selector is set the client will connect with a non blocking socket channel and will not start a thread of its own.<br>
+	 * The same selector can be shared by many clients. Setting the selector to null restores the blocking connection.<br>
+	 * <br>
+	 * Has to be set before <b>connect()</b> is called. The client timeout is not used for non blocking connections.
+	 * 
+	 * @param connectionSelector The selector that will be used for new connections.
+	 * */
+	public void setConnectionSelector(ConnectionSelector connectionSelector) {
+		this.connectionSelector = connectionSelector;
+	}
+
+	/**
+	 * Hands all received packages to the given executor instead of handling them on the reading thread.<br>
+	 * See {@link ClientConnection#setDispatchExecutor(Executor, DispatchOrdering)}
+	 * 
+	 * @param executor The executor that runs the callbacks. Can be null.
+	 * @param ordering The ordering that is kept for the received packages.
+	 * */
+	public void setDispatchExecutor(Executor executor, DispatchOrdering ordering) {
+		this.dispatchExecutor = executor;
+		this.dispatchOrdering = ordering;
+		if(this.connection != null) this.connection.setDispatchExecutor(executor, ordering);
+	}
+
+	public Executor getDispatchExecutor() {
+		return dispatchExecutor;
+	}
+
+	public int getProtocolFeatures() {
+		return protocolFeatures;
+	}
+
+	/**
+	 * Sets the wire format features the client offers to the server when connecting.<br>
+	 * When features are set the client starts a handshake right after connecting. See {@link ClientConnection#startHandshake()}<br>
+	 * <br>
+	 * <b>Only set features when the server supports the ProtocolHandshake package.</b>
+	 * 
+	 * @param protocolFeatures The features as bit mask. See {@link WireFormat}
+	 * */
+	public void setProtocolFeatures(int protocolFeatures) {
+		this.protocolFeatures = protocolFeatures;
+	}
+
+	public HeartbeatManager getHeartbeatManager() {
+		return heartbeatManager;
+	}
+
+	/**
+	 * Sets the heartbeat manager that keeps the connections of this client alive. See {@link HeartbeatManager}<br>
+	 * The same manager can be shared by many clients. With a heartbeat manager blocking connections do not use the client timeout,
+	 * so a connection that is healthy but quiet is not closed.<br>
+	 * <br>
+	 * Has to be set before <b>connect()</b> is called.
+	 * 
+	 * @param heartbeatManager The heartbeat manager for new connections. Can be null.
+	 * */
+	public void setHeartbeatManager(HeartbeatManager heartbeatManager) {
+		this.heartbeatManager = heartbeatManager;
+	}
+
+	public ReconnectPolicy getReconnectPolicy() {
+		return reconnectPolicy;
+	}
+
+	/**
+	 * Reconnects automatically when the connection is lost. See {@link ReconnectPolicy}<br>
+	 * <br>
+	 * While reconnecting, packages sent with <b>send()</b> and <b>sendAsync()</b> and packages that were still queued by the lost connection
+	 * are kept in a {@link ReplayBuffer} and sent after the reconnect.<br>
+	 * When the server sent a session token with a <b>ReconnectPackage</b> the token is sent back as first package after the reconnect,
+	 * so the server can resume the session.<br>
+	 * The reconnect stops when <b>disable()</b> is called.
+	 * 
+	 * @param reconnectPolicy The policy for reconnecting. Null disables reconnecting.
+	 * */
+	public synchronized void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+		this.reconnectPolicy = reconnectPolicy;
+		if(this.replayBuffer != null) this.replayBuffer.fail(new IOException("Replay buffer was replaced!"));
+		this.replayBuffer = reconnectPolicy != null ? new ReplayBuffer(reconnectPolicy.getReplayCapacity()) : null;
+		if(this.connection != null) {
+			this.connection.setReplayBuffer(replayBuffer);
+			if(replayBuffer != null) replayBuffer.replayTo(connection);
+		}
+	}
+
+	/**
+	 * Returns true while the client waits for a reconnect attempt.
+	 * */
+	public synchronized boolean isReconnecting() {
+		return reconnecting;
+	}
+
+	/**
+	 * Returns the session token that is sent after a reconnect.
+	 * */
+	public synchronized byte[] getSessionToken() {
+		return sessionToken;
+	}
+
+	/**
+	 * Sets the session token that is sent in a <b>ReconnectPackage</b> after a reconnect.<br>
+	 * A token received from the server replaces it when the connection is lost.
+	 * */
+	public synchronized void setSessionToken(byte[] sessionToken) {
+		this.sessionToken = sessionToken;
+	}
+
+	public BufferPool getReceiveBufferPool() {
+		return receiveBufferPool;
+	}
+
+	/**
+	 * Sets a pool the payloads of received packages are taken from.<br>
+	 * See {@link ClientConnection#setReceiveBufferPool(BufferPool)}
+	 * 
+	 * @param receiveBufferPool The pool for received payloads. Can be null.
+	 * */
+	public void setReceiveBufferPool(BufferPool receiveBufferPool) {
+		this.receiveBufferPool = receiveBufferPool;
+		if(this.connection != null) this.connection.setReceiveBufferPool(receiveBufferPool);
+	}
+
 	public PackageManager getDefaultPackageManager() {
 		return defaultPackageManager;
 	}
@@ -140,7 +571,8 @@ public class Client {
 	/**
 	 * Sets a callback function that is invoked when the client is disabled and stopped.<b>
 	 * This can happen when an error occurs while receiving a package or due to a time out.<b>
-	 * In the best case the client should disconnect without any errors.
+	 * In the best case the client should disconnect without any errors.<br>
+	 * With a reconnect policy the callback is invoked for every lost connection before reconnecting.
 	 * 
 	 * @param clientDisconnectCallback The callback that is invoked on a client disconnect.
 	 * */
@@ -148,6 +580,27 @@ public class Client {
 		this.clientDisconnectCallback = clientDisconnectCallback;
 	}
 	
+	/**
+	 * Sets a callback function that is invoked when the connection becomes writable or unwritable.<br>
+	 * See {@link ClientWritabilityCallback}
+	 * 
+	 * @param clientWritabilityCallback The callback that is invoked when the writability changes.
+	 * */
+	public void setClientWritabilityCallback(ClientWritabilityCallback clientWritabilityCallback) {
+		this.clientWritabilityCallback = clientWritabilityCallback;
+	}
+	
+	/**
+	 * Sets a callback function that is invoked when the server opens a stream.<br>
+	 * See {@link ClientStreamCallback}
+	 * 
+	 * @param clientStreamCallback The callback that is invoked for received streams.
+	 * */
+	public void setClientStreamCallback(ClientStreamCallback clientStreamCallback) {
+		this.clientStreamCallback = clientStreamCallback;
+		if(this.connection != null) this.connection.setClientStreamCallback(clientStreamCallback);
+	}
+	
 	/**
 	 * Sets the timeout callback function that will be called when a connection did not receive any packages for a set time (timeout).<br>
 	 * The function will be called before the connection is closed an disposed of.<br>
@@ -0,0 +1,81 @@
+package com.client.main;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Defines how a client reconnects after its connection was lost.<br>
+ * <br>
+ * The delay before an attempt grows exponentially: <b>initialDelay * multiplier^attempt</b>, limited by <b>maxDelay</b>.
+ * The actual delay is a random value between 0 and that limit (full jitter), so many clients that lost their connection
+ * at the same time spread their attempts instead of reconnecting all at once.
+ * */
+public class ReconnectPolicy {
+
+	private final Duration initialDelay;
+	private final Duration maxDelay;
+	private final double multiplier;
+	private final int maxAttempts;
+	private final int replayCapacity;
+
+	/**
+	 * Creates a policy that starts with 100 milliseconds, doubles the delay up to 30 seconds, tries forever
+	 * and keeps up to 1024 outgoing packages while reconnecting.
+	 * */
+	public ReconnectPolicy() {
+		this(Duration.ofMillis(100), Duration.ofSeconds(30), 2.0, -1, 1024);
+	}
+
+	/**
+	 * @param initialDelay The delay limit of the first attempt.
+	 * @param maxDelay The largest delay limit.
+	 * @param multiplier The factor the delay limit grows by with every failed attempt. Has to be at least 1.
+	 * @param maxAttempts The max number of attempts after a lost connection. A negative number tries forever.
+	 * @param replayCapacity The max number of outgoing packages that are kept while reconnecting.
+	 * */
+	public ReconnectPolicy(Duration initialDelay, Duration maxDelay, double multiplier, int maxAttempts, int replayCapacity) {
+		if(initialDelay == null || maxDelay == null)
+			throw new NullPointerException("The delays can not be null!");
+		if(initialDelay.isNegative() || maxDelay.compareTo(initialDelay) < 0)
+			throw new IllegalArgumentException("The initial delay can not be negative or larger then the max delay!");
+		if(multiplier < 1)
+			throw new IllegalArgumentException("The multiplier has to be at least 1!");
+		if(replayCapacity < 1)
+			throw new IllegalArgumentException("The replay capacity has to be at least 1!");
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.multiplier = multiplier;
+		this.maxAttempts = maxAttempts;
+		this.replayCapacity = replayCapacity;
+	}
+
+	/**
+	 * Returns the randomized delay in nanoseconds before the given attempt. The first attempt is 0.
+	 * */
+	public long getDelayNanos(int attempt) {
+		double limit = initialDelay.toNanos() * Math.pow(multiplier, attempt);
+		long bound = (long) Math.min(limit, maxDelay.toNanos());
+		return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+	}
+
+	public Duration getInitialDelay() {
+		return initialDelay;
+	}
+
+	public Duration getMaxDelay() {
+		return maxDelay;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public int getReplayCapacity() {
+		return replayCapacity;
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.client.packageing;
+
+import com.client.main.Client;
+
+/**
+ * Pool of byte arrays for the payloads of received packages.<br>
+ * <br>
+ * Every array length up to the max package size is its own size class, so an acquired array always has exactly the requested length
+ * and <b>DataPackage.getByteDataRaw()</b> keeps returning an array of the payload length.<br>
+ * Fixed length packages and dynamic packages of recurring sizes therefore reuse the same arrays over and over again.<br>
+ * <br>
+ * Each size class keeps at most <b>maxBuffersPerSize</b> arrays. Arrays beyond that are left to the garbage collector.<br>
+ * The pool is thread safe, arrays can be released by any thread.
+ * */
+public class BufferPool {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final SizeClass[] sizeClasses;
+	private final int maxBuffersPerSize;
+
+	/**
+	 * Creates a pool for arrays up to <b>Client.getMaxPackageSize()</b> bytes that keeps up to 16 arrays per size.
+	 * */
+	public BufferPool() {
+		this(16);
+	}
+
+	/**
+	 * Creates a pool for arrays up to <b>Client.getMaxPackageSize()</b> bytes.
+	 *
+	 * @param maxBuffersPerSize The max number of arrays that are kept for every array length.
+	 * */
+	public BufferPool(int maxBuffersPerSize) {
+		this(maxBuffersPerSize, Client.getMaxPackageSize());
+	}
+
+	/**
+	 * Creates a pool for arrays up to <b>maxSize</b> bytes.
+	 *
+	 * @param maxBuffersPerSize The max number of arrays that are kept for every array length.
+	 * @param maxSize The largest array length that is pooled.
+	 * */
+	public BufferPool(int maxBuffersPerSize, int maxSize) {
+		if(maxBuffersPerSize <= 0 || maxSize < 0)
+			throw new IllegalArgumentException("The pool size has to be larger then 0 and the max array size can not be negative!");
+		this.maxBuffersPerSize = maxBuffersPerSize;
+		this.sizeClasses = new SizeClass[maxSize + 1];
+	}
+
+	/**
+	 * Returns an array of exactly <b>length</b> bytes.<br>
+	 * The content of the array is undefined. Arrays larger then the max size of the pool are always newly allocated.
+	 * */
+	public byte[] acquire(int length) {
+		if(length == 0) return EMPTY;
+		if(length >= sizeClasses.length) return new byte[length];
+		SizeClass sizeClass = sizeClasses[length];
+		if(sizeClass == null) return new byte[length];
+		byte[] array = sizeClass.poll();
+		return array != null ? array : new byte[length];
+	}
+
+	/**
+	 * Gives an array back to the pool.<br>
+	 * The array must not be used anymore after it was released.
+	 * */
+	public void release(byte[] array) {
+		if(array == null || array.length == 0 || array.length >= sizeClasses.length) return;
+		SizeClass sizeClass = sizeClasses[array.length];
+		if(sizeClass == null) {
+			synchronized (sizeClasses) {
+				sizeClass = sizeClasses[array.length];
+				if(sizeClass == null) {
+					sizeClass = new SizeClass(maxBuffersPerSize);
+					sizeClasses[array.length] = sizeClass;
+				}
+			}
+		}
+		sizeClass.offer(array);
+	}
+
+	/**
+	 * Returns the largest array length that is pooled.
+	 * */
+	public int getMaxSize() {
+		return sizeClasses.length - 1;
+	}
+
+	private static final class SizeClass {
+
+		private final byte[][] arrays;
+		private int count = 0;
+
+		SizeClass(int capacity) {
+			this.arrays = new byte[capacity][];
+		}
+
+		synchronized byte[] poll() {
+			if(count == 0) return null;
+			byte[] array = arrays[--count];
+			arrays[count] = null;
+			return array;
+		}
+
+		synchronized void offer(byte[] array) {
+			if(count < arrays.length) arrays[count++] = array;
+		}
+
+	}
+
+}
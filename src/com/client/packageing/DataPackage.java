@@ -14,6 +14,10 @@ public class DataPackage{
 	private byte[] byteDataRaw;
 	private short length;
 	private boolean dynamicLength = false;
+	private BufferPool payloadPool = null;
+	private int channelId = 0;
+	private int correlationId = 0;
+	private boolean response = false;
 	
 	public DataPackage(short length, boolean dynamicLength, byte[] byteDataRaw) {
 		this(new byte[] {0x0, 0x0}, length, dynamicLength, byteDataRaw);
@@ -57,11 +61,96 @@ public class DataPackage{
 	 * @return byte[]
 	 * */
 	public byte[] pack() {
-		byte[] l = new byte[0];
+		ByteBuffer buffer = ByteBuffer.allocate(getFrameSize());
+		writeTo(buffer);
+		return buffer.array();
+	}
+	
+	/**
+	 * Returns the number of bytes this package takes up when packed.<br>
+	 * This is the id, the length prefix for dynamic length packages and the payload.
+	 * */
+	public int getFrameSize() {
+		return this.id.length + (dynamicLength ? this.length : 0) + getPayloadSize();
+	}
+	
+	/**
+	 * Returns the number of payload bytes.<br>
+	 * For packages with fields marked as {@link com.client.packageing.annotations.DataPackageField} this is the size of the encoded fields,
+	 * otherwise the length of the raw data.
+	 * */
+	public int getPayloadSize() {
+		PackageCodec codec = PackageCodec.forClass(getClass());
+		return codec != null ? codec.size(this) : this.byteDataRaw.length;
+	}
+	
+	/**
+	 * Writes the payload directly into the given buffer.<br>
+	 * Packages with marked fields write their fields without creating an intermediate array.
+	 * 
+	 * @throws java.nio.BufferOverflowException When the buffer has less then <b>getPayloadSize()</b> bytes remaining.
+	 * */
+	public void writePayload(ByteBuffer buffer) {
+		PackageCodec codec = PackageCodec.forClass(getClass());
+		if(codec != null) codec.write(this, buffer);
+		else buffer.put(this.byteDataRaw);
+	}
+	
+	/**
+	 * Writes the packed package directly into the given buffer.<br>
+	 * The written bytes are the same as the ones returned by <b>pack()</b>, but no intermediate arrays are created.<br>
+	 * The buffer needs at least <b>getFrameSize()</b> bytes remaining.
+	 * 
+	 * @param buffer The buffer the package will be written to.
+	 * 
+	 * @throws java.nio.BufferOverflowException When the buffer does not have enough space left.
+	 * */
+	public void writeTo(ByteBuffer buffer) {
+		buffer.put(this.id);
 		if(dynamicLength) {
-			l = DataPackage.getByteArrayFromInt(this.byteDataRaw.length, this.length);
+			DataPackage.putLength(buffer, getPayloadSize(), this.length);
 		}
-		return concatAll(this.id, l, this.byteDataRaw);
+		writePayload(buffer);
+	}
+	
+	/**
+	 * Writes a length prefix of <b>width</b> bytes into the buffer.<br>
+	 * The prefix is written so that it can be read back with <b>getFromByte()</b>:<br>
+	 * 1 byte as byte, 2 to 3 bytes as short and 4 or more bytes as int. Remaining bytes are padded with 0.
+	 * 
+	 * @param buffer The buffer the length prefix will be written to.
+	 * @param value The length to write.
+	 * @param width The number of bytes of the length prefix.
+	 * */
+	public static void putLength(ByteBuffer buffer, int value, int width) {
+		int used;
+		if(width >= Integer.BYTES) {
+			buffer.putInt(value);
+			used = Integer.BYTES;
+		}else if(width >= Short.BYTES) {
+			buffer.putShort((short)value);
+			used = Short.BYTES;
+		}else if(width == 1) {
+			buffer.put((byte)value);
+			used = 1;
+		}else {
+			used = 0;
+		}
+		for(int i = used; i < width; i++) buffer.put((byte)0);
+	}
+	
+	/**
+	 * Reads a length prefix of <b>width</b> bytes that was written with <b>putLength()</b>.
+	 * 
+	 * @param data The array the length prefix is read from.
+	 * @param offset The position of the length prefix in the array.
+	 * @param width The number of bytes of the length prefix.
+	 * */
+	public static int readLength(byte[] data, int offset, int width) {
+		if(width >= Integer.BYTES) return ByteBuffer.wrap(data, offset, Integer.BYTES).getInt();
+		if(width >= Short.BYTES) return ByteBuffer.wrap(data, offset, Short.BYTES).getShort();
+		if(width == 1) return data[offset];
+		return 0;
 	}
 	
 	/**
@@ -96,7 +185,8 @@ public class DataPackage{
 	}
 	
 	/**
-	 * Converts an integer to a byte array of length <b>arrayLength</b>
+	 * Converts an integer to a byte array of length <b>arrayLength</b>.<br>
+	 * The integer is written the same way as a length prefix, see <b>putLength()</b>.
 	 * 
 	 * @param i Integer to be converted to a byte array
 	 * @param arrayLength length of the return array
@@ -104,7 +194,7 @@ public class DataPackage{
 	@Deprecated
 	public static byte[] getByteArrayFromInt(int i, int arrayLength) {
 		ByteBuffer buffer = ByteBuffer.allocate(arrayLength);
-		buffer.putInt(i);
+		putLength(buffer, i, arrayLength);
 		return buffer.array();
 	}
 	
@@ -268,7 +358,55 @@ public class DataPackage{
 		return out;
 	}
 
+	/**
+	 * Marks the raw data of this package as borrowed from the given pool.<br>
+	 * The raw data is given back to the pool when <b>release()</b> is called.
+	 * */
+	public void borrowPayload(BufferPool pool) {
+		this.payloadPool = pool;
+	}
+	
+	/**
+	 * Keeps the raw data of this package from being given back to its pool.<br>
+	 * <br>
+	 * When a receive buffer pool is used the connection releases every package after all callbacks have returned.
+	 * A callback that keeps the package or its raw data for later has to call this function.
+	 * 
+	 * @return this package
+	 * */
+	public DataPackage retain() {
+		this.payloadPool = null;
+		return this;
+	}
+	
+	/**
+	 * Gives the raw data of this package back to the pool it was borrowed from.<br>
+	 * Does nothing when the raw data was not borrowed or the package was retained.<br>
+	 * The package must not be used anymore after it was released.
+	 * */
+	public void release() {
+		BufferPool pool = this.payloadPool;
+		if(pool == null) return;
+		this.payloadPool = null;
+		pool.release(this.byteDataRaw);
+	}
+	
+	/**
+	 * Returns true when the raw data of this package is borrowed from a pool and will be given back on <b>release()</b>.
+	 * */
+	public boolean isBorrowed() {
+		return payloadPool != null;
+	}
+
+	/**
+	 * Returns the raw payload.<br>
+	 * A package with marked fields that was created without raw data returns its encoded fields. The encoded array is not kept.
+	 * */
 	public byte[] getByteDataRaw() {
+		if(byteDataRaw == null) {
+			PackageCodec codec = PackageCodec.forClass(getClass());
+			if(codec != null) return codec.encode(this);
+		}
 		return byteDataRaw;
 	}
 
@@ -296,4 +434,39 @@ public class DataPackage{
 		this.byteDataRaw = byteDataRaw;
 	}
 
+	/**
+	 * Returns the id of the logical channel the package was received on.<br>
+	 * Packages received on the default channel return 0.
+	 * */
+	public int getChannelId() {
+		return channelId;
+	}
+
+	public void setChannelId(int channelId) {
+		this.channelId = channelId;
+	}
+
+	/**
+	 * Returns the correlation id of a request or a response or 0 when the package is neither.<br>
+	 * A received request is answered with <b>ClientConnection.respond()</b>.
+	 * */
+	public int getCorrelationId() {
+		return correlationId;
+	}
+
+	public void setCorrelationId(int correlationId) {
+		this.correlationId = correlationId;
+	}
+
+	/**
+	 * Returns true when the package is the response to a request.
+	 * */
+	public boolean isResponse() {
+		return response;
+	}
+
+	public void setResponse(boolean response) {
+		this.response = response;
+	}
+
 }
@@ -0,0 +1,107 @@
+package com.client.packageing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A received package that has not been decoded yet.<br>
+ * <br>
+ * The lazy package only keeps a view of the payload in the receive buffer: the array, an offset and a length.
+ * The typed package is built by <b>decode()</b> the first time it is asked for.<br>
+ * A lazy package can be sent again unchanged. Its payload is then copied straight from the view into the send buffer,
+ * so a relay that forwards packages to another connection neither decodes nor encodes them.<br>
+ * <br>
+ * Packages are handed out lazily when <b>PackageManager.setLazy()</b> was set for their id.
+ * Their callbacks receive the lazy package instead of the typed one.<br>
+ * When a receive buffer pool is used the view and the decoded package are only valid until the lazy package is released.
+ * Call <b>retain()</b> to keep them for later.
+ * 
+ * <pre>
+ * (data, con) -> {
+ *     other.send(data);
+ *     MessagePackage message = (MessagePackage) ((LazyPackage) data).decode();
+ * }</pre>
+ * */
+public class LazyPackage extends DataPackage {
+
+	private final PackageInfo info;
+	private final byte[] data;
+	private final int offset;
+	private final int length;
+	private DataPackage decoded = null;
+
+	/**
+	 * Creates a lazy package over <b>length</b> bytes of the array from <b>offset</b> on.
+	 * 
+	 * @param info The package info of the received package.
+	 * */
+	public LazyPackage(PackageInfo info, byte[] data, int offset, int length) {
+		super(info.getId(), info.getLength(), info.isDynamicLength(), offset == 0 && length == data.length ? data : null);
+		if(offset < 0 || length < 0 || offset > data.length - length)
+			throw new IndexOutOfBoundsException("Range " + offset + " + " + length + " is out of bounds for length " + data.length);
+		this.info = info;
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Builds the typed package with the constructor of the package info.<br>
+	 * The package is only built once, later calls return the same package.
+	 * 
+	 * @return The typed package or null when the constructor failed.
+	 * */
+	public DataPackage decode() {
+		if(decoded != null) return decoded;
+		DataPackage out = info.getConstruct().build(info.getId(), info.getLength(), info.isDynamicLength(), getByteDataRaw());
+		if(out != null) {
+			out.setChannelId(getChannelId());
+			out.setCorrelationId(getCorrelationId());
+			out.setResponse(isResponse());
+		}
+		this.decoded = out;
+		return out;
+	}
+
+	/**
+	 * Returns true when <b>decode()</b> was already called.
+	 * */
+	public boolean isDecoded() {
+		return decoded != null;
+	}
+
+	public PackageInfo getInfo() {
+		return info;
+	}
+
+	@Override
+	public int getPayloadSize() {
+		return length;
+	}
+
+	@Override
+	public void writePayload(ByteBuffer buffer) {
+		buffer.put(data, offset, length);
+	}
+
+	/**
+	 * Returns the payload. A view of only a part of the array is copied into an array of its own on the first call.
+	 * */
+	@Override
+	public byte[] getByteDataRaw() {
+		byte[] raw = super.getByteDataRaw();
+		if(raw == null) {
+			raw = new byte[length];
+			System.arraycopy(data, offset, raw, 0, length);
+			setByteDataRaw(raw);
+		}
+		return raw;
+	}
+
+	/**
+	 * Returns a view of the payload without copying it.
+	 * */
+	public PayloadReader getReader(PayloadReader reader) {
+		return reader.reset(data, offset, length);
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.client.packageing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.client.packageing.annotations.DataPackageField;
+
+/**
+ * Writes and reads the fields of a package that are marked with {@link DataPackageField}.<br>
+ * <br>
+ * The codec of a package class is created once, the first time it is needed, and kept for the lifetime of the class.
+ * Fields are accessed through var handles, so no reflection is used while encoding or decoding.<br>
+ * <br>
+ * The fields are written in ascending order, all numbers big endian:<br>
+ * boolean and byte as 1 byte, short and char as 2 bytes, int and float as 4 bytes, long and double as 8 bytes.<br>
+ * String and byte[] are written as int length followed by the UTF-8 bytes or the array. <b>null</b> is written as length -1.<br>
+ * <br>
+ * For packages with a codec the fields are the source of the payload. The payload is written straight from the fields into the send buffer
+ * and a received payload is read into the fields right after the package was constructed.
+ * */
+public final class PackageCodec {
+
+	private static final ClassValue<PackageCodec> CODECS = new ClassValue<>() {
+		@Override
+		protected PackageCodec computeValue(Class<?> type) {
+			return create(type);
+		}
+	};
+
+	private enum Type {
+		BOOLEAN(1), BYTE(1), SHORT(2), CHAR(2), INT(4), FLOAT(4), LONG(8), DOUBLE(8), STRING(-1), BYTES(-1);
+
+		final int size;
+
+		Type(int size) {
+			this.size = size;
+		}
+	}
+
+	private static final class FieldCodec {
+		final Type type;
+		final VarHandle handle;
+
+		FieldCodec(Type type, VarHandle handle) {
+			this.type = type;
+			this.handle = handle;
+		}
+	}
+
+	private final FieldCodec[] fields;
+	private final int fixedSize;
+	private final boolean variable;
+
+	private PackageCodec(FieldCodec[] fields) {
+		this.fields = fields;
+		int size = 0;
+		boolean variable = false;
+		for(FieldCodec field : fields) {
+			if(field.type.size < 0) variable = true;
+			else size += field.type.size;
+		}
+		this.fixedSize = size;
+		this.variable = variable;
+	}
+
+	/**
+	 * Returns the codec of the package class or null when the class has no fields marked with {@link DataPackageField}.
+	 * 
+	 * @throws IllegalArgumentException When a marked field is static or final, has an unsupported type or two fields have the same order.
+	 * */
+	public static PackageCodec forClass(Class<?> type) {
+		return CODECS.get(type);
+	}
+
+	private static PackageCodec create(Class<?> type) {
+		List<Field> marked = new ArrayList<>();
+		for(Class<?> c = type; c != null && c != DataPackage.class && c != Object.class; c = c.getSuperclass()) {
+			for(Field f : c.getDeclaredFields()) {
+				if(f.isAnnotationPresent(DataPackageField.class)) marked.add(f);
+			}
+		}
+		if(marked.isEmpty()) return null;
+		marked.sort(Comparator.comparingInt(f -> f.getAnnotation(DataPackageField.class).order()));
+		
+		FieldCodec[] fields = new FieldCodec[marked.size()];
+		for(int i = 0; i < fields.length; i++) {
+			Field f = marked.get(i);
+			if(i > 0 && f.getAnnotation(DataPackageField.class).order() == marked.get(i - 1).getAnnotation(DataPackageField.class).order())
+				throw new IllegalArgumentException("The fields " + marked.get(i - 1).getName() + " and " + f.getName() + " of " + type.getName() + " have the same order!");
+			if(Modifier.isStatic(f.getModifiers()) || Modifier.isFinal(f.getModifiers()))
+				throw new IllegalArgumentException("The field " + f.getName() + " of " + type.getName() + " can not be static or final!");
+			try {
+				VarHandle handle = MethodHandles.privateLookupIn(f.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(f);
+				fields[i] = new FieldCodec(typeOf(f), handle);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException("Can not access the field " + f.getName() + " of " + type.getName() + "!", e);
+			}
+		}
+		return new PackageCodec(fields);
+	}
+
+	private static Type typeOf(Field f) {
+		Class<?> c = f.getType();
+		if(c == boolean.class) return Type.BOOLEAN;
+		if(c == byte.class) return Type.BYTE;
+		if(c == short.class) return Type.SHORT;
+		if(c == char.class) return Type.CHAR;
+		if(c == int.class) return Type.INT;
+		if(c == float.class) return Type.FLOAT;
+		if(c == long.class) return Type.LONG;
+		if(c == double.class) return Type.DOUBLE;
+		if(c == String.class) return Type.STRING;
+		if(c == byte[].class) return Type.BYTES;
+		throw new IllegalArgumentException("The type " + c.getName() + " of the field " + f.getName() + " is not supported!");
+	}
+
+	/**
+	 * Returns the number of payload bytes of the package.
+	 * */
+	public int size(DataPackage data) {
+		if(!variable) return fixedSize;
+		int size = fixedSize;
+		for(FieldCodec field : fields) {
+			if(field.type == Type.STRING) {
+				String s = (String) field.handle.get(data);
+				size += Integer.BYTES + (s == null ? 0 : Utf8.length(s));
+			}else if(field.type == Type.BYTES) {
+				byte[] b = (byte[]) field.handle.get(data);
+				size += Integer.BYTES + (b == null ? 0 : b.length);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the fields of the package into the buffer.
+	 * 
+	 * @throws java.nio.BufferOverflowException When the buffer has less then <b>size()</b> bytes remaining.
+	 * */
+	public void write(DataPackage data, ByteBuffer out) {
+		for(FieldCodec field : fields) {
+			switch(field.type) {
+			case BOOLEAN: out.put((boolean) field.handle.get(data) ? (byte)1 : (byte)0); break;
+			case BYTE: out.put((byte) field.handle.get(data)); break;
+			case SHORT: out.putShort((short) field.handle.get(data)); break;
+			case CHAR: out.putChar((char) field.handle.get(data)); break;
+			case INT: out.putInt((int) field.handle.get(data)); break;
+			case FLOAT: out.putFloat((float) field.handle.get(data)); break;
+			case LONG: out.putLong((long) field.handle.get(data)); break;
+			case DOUBLE: out.putDouble((double) field.handle.get(data)); break;
+			case STRING:
+				String s = (String) field.handle.get(data);
+				if(s == null) {
+					out.putInt(-1);
+				}else {
+					out.putInt(Utf8.length(s));
+					Utf8.put(out, s);
+				}
+				break;
+			case BYTES:
+				byte[] b = (byte[]) field.handle.get(data);
+				if(b == null) {
+					out.putInt(-1);
+				}else {
+					out.putInt(b.length);
+					out.put(b);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads the fields of the package from the buffer.
+	 * 
+	 * @throws java.nio.BufferUnderflowException When the buffer ends before all fields were read.
+	 * @throws IllegalArgumentException When a length is larger then the remaining bytes.
+	 * */
+	public void read(DataPackage data, ByteBuffer in) {
+		for(FieldCodec field : fields) {
+			switch(field.type) {
+			case BOOLEAN: field.handle.set(data, in.get() != 0); break;
+			case BYTE: field.handle.set(data, in.get()); break;
+			case SHORT: field.handle.set(data, in.getShort()); break;
+			case CHAR: field.handle.set(data, in.getChar()); break;
+			case INT: field.handle.set(data, in.getInt()); break;
+			case FLOAT: field.handle.set(data, in.getFloat()); break;
+			case LONG: field.handle.set(data, in.getLong()); break;
+			case DOUBLE: field.handle.set(data, in.getDouble()); break;
+			case STRING:
+				int length = readLength(in);
+				if(length < 0) {
+					field.handle.set(data, (String) null);
+				}else {
+					field.handle.set(data, Utf8.get(in.array(), in.arrayOffset() + in.position(), length));
+					in.position(in.position() + length);
+				}
+				break;
+			case BYTES:
+				int count = readLength(in);
+				byte[] b = null;
+				if(count >= 0) {
+					b = new byte[count];
+					in.get(b);
+				}
+				field.handle.set(data, b);
+				break;
+			}
+		}
+	}
+
+	private static int readLength(ByteBuffer in) {
+		int length = in.getInt();
+		if(length > in.remaining())
+			throw new IllegalArgumentException("Length " + length + " is larger then the remaining " + in.remaining() + " bytes!");
+		return length;
+	}
+
+	/**
+	 * Returns the fields of the package as payload array.
+	 * */
+	public byte[] encode(DataPackage data) {
+		ByteBuffer buffer = ByteBuffer.allocate(size(data));
+		write(data, buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * Reads the fields of the package from its raw data.
+	 * */
+	public void decode(DataPackage data) {
+		byte[] raw = data.getByteDataRaw();
+		if(raw != null) read(data, ByteBuffer.wrap(raw));
+	}
+
+	/**
+	 * Returns true when the size of the payload depends on the values of the fields.
+	 * */
+	public boolean isVariableSize() {
+		return variable;
+	}
+
+	/**
+	 * Returns the size of all fields with a fixed size.
+	 * */
+	public int getFixedSize() {
+		return fixedSize;
+	}
+
+}
@@ -6,6 +6,8 @@ public class PackageInfo{
 	private boolean dynamicLength;
 	private PackageConstructor construct;
 	private PackageCallback callback;
+	private boolean compressible = false;
+	private boolean lazy = false;
 	
 	public PackageInfo(byte[] id, short length, boolean dynamicLength, PackageConstructor construct, PackageCallback packageCallBack) {
 		this.id = id;
@@ -15,6 +17,15 @@ public class PackageInfo{
 		this.callback = packageCallBack;
 	}
 
+	/**
+	 * Creates a copy of the given package info.
+	 * */
+	public PackageInfo(PackageInfo info) {
+		this(info.id, info.length, info.dynamicLength, info.construct, info.callback);
+		this.compressible = info.compressible;
+		this.lazy = info.lazy;
+	}
+
 	public byte[] getId() {
 		return id;
 	}
@@ -39,6 +50,37 @@ public class PackageInfo{
 		this.callback = callback;
 	}
 	
+	/**
+	 * Returns true when the payload of this package may be compressed.
+	 * */
+	public boolean isCompressible() {
+		return compressible;
+	}
+
+	/**
+	 * Allows the payload of this package to be compressed.<br>
+	 * Only dynamic length packages are compressed, and only when compression was negotiated for the connection
+	 * and the payload is larger then the compression threshold of the connection.
+	 * */
+	public void setCompressible(boolean compressible) {
+		this.compressible = compressible;
+	}
+	
+	/**
+	 * Returns true when received packages are handed out as {@link LazyPackage} instead of being built right away.
+	 * */
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Hands out received packages as {@link LazyPackage}.<br>
+	 * The typed package is only built when <b>LazyPackage.decode()</b> is called, so packages that are only forwarded are never decoded.
+	 * */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+	
 	private String formatID() {
 		String out = "[";
 		int count = 0;
@@ -1,13 +1,19 @@
 package com.client.packageing;
 
 import java.lang.reflect.Field;
-import java.util.HashMap;
 
 import com.client.main.Client;
 
 public abstract class PackageManager {
 
-	private HashMap<Integer, PackageInfo> PACKAGELOOKUP = new HashMap<>();
+	private static final int TABLE_SIZE = 1 << (DataPackage.IDLENGTH * 8);
+	
+	/**
+	 * Lookup table indexed by the unsigned package id.<br>
+	 * The table is never modified after it was published. Changes create a copy that replaces the table,
+	 * so lookups are lock free while packages are registered or callbacks are changed.
+	 * */
+	private volatile PackageInfo[] PACKAGELOOKUP = new PackageInfo[TABLE_SIZE];
 	
 	public PackageManager(Client client, Class<? extends PackageManager> type) {
 		if(client == null || type == null)
@@ -144,10 +150,15 @@ public abstract class PackageManager {
 			throw new IllegalArgumentException("The package length can not be negative!");
 		if(info.getConstruct() == null) 
 			throw new NullPointerException("Package constructor can not be null!");
-		if(getPackageInfo(info.getId()) != null) 
-			throw new IllegalArgumentException("Cannot register package with id: (" + DataPackage.getFromByte(info.getId()) + ")! A package is already registered under that id! ");
 		
-		PACKAGELOOKUP.put((int)DataPackage.getFromByte(info.getId()), info);
+		synchronized (this) {
+			if(getPackageInfo(info.getId()) != null) 
+				throw new IllegalArgumentException("Cannot register package with id: (" + DataPackage.getFromByte(info.getId()) + ")! A package is already registered under that id! ");
+			
+			PackageInfo[] table = PACKAGELOOKUP.clone();
+			table[index(info.getId())] = info;
+			PACKAGELOOKUP = table;
+		}
 	}
 	
 	/**
@@ -176,30 +187,79 @@ public abstract class PackageManager {
 	 * @param id The package id.
 	 * @param callback The callback function.
 	 * */
-	public void setPackageCallBack(int id, PackageCallback callback) {
+	public synchronized void setPackageCallBack(int id, PackageCallback callback) {
 		if(getPackageInfo(id) == null)
 			throw new IllegalArgumentException("Could not find package with id: " + id);
 		if(callback == null)
 			throw new IllegalArgumentException("Callback can not be null!");
-		PackageInfo info = getPackageInfo(id);
+		PackageInfo info = new PackageInfo(getPackageInfo(id));
 		info.setCallback(callback);
-		PACKAGELOOKUP.put(id, info);
+		PackageInfo[] table = PACKAGELOOKUP.clone();
+		table[id & (TABLE_SIZE - 1)] = info;
+		PACKAGELOOKUP = table;
+	}
+	
+	/**
+	 * Allows or forbids compressing the payload of a package.<br>
+	 * See {@link PackageInfo#setCompressible(boolean)}
+	 * 
+	 * @throws IllegalArgumentException When no package was found for the given id.
+	 * 
+	 * @param id A byte array of the id.
+	 * @param compressible True to allow compression.
+	 * */
+	public synchronized void setCompressible(byte[] id, boolean compressible) {
+		if(getPackageInfo(id) == null)
+			throw new IllegalArgumentException("Could not find package with id: " + DataPackage.getFromByte(id));
+		PackageInfo info = new PackageInfo(getPackageInfo(id));
+		info.setCompressible(compressible);
+		PackageInfo[] table = PACKAGELOOKUP.clone();
+		table[index(id)] = info;
+		PACKAGELOOKUP = table;
 	}
 	
-	public void clearPackages() {
-		this.PACKAGELOOKUP.clear();
+	/**
+	 * Hands out received packages with the given id as {@link LazyPackage}.<br>
+	 * See {@link PackageInfo#setLazy(boolean)}
+	 * 
+	 * @throws IllegalArgumentException When no package was found for the given id.
+	 * 
+	 * @param id A byte array of the id.
+	 * @param lazy True to skip decoding until the package is needed.
+	 * */
+	public synchronized void setLazy(byte[] id, boolean lazy) {
+		if(getPackageInfo(id) == null)
+			throw new IllegalArgumentException("Could not find package with id: " + DataPackage.getFromByte(id));
+		PackageInfo info = new PackageInfo(getPackageInfo(id));
+		info.setLazy(lazy);
+		PackageInfo[] table = PACKAGELOOKUP.clone();
+		table[index(id)] = info;
+		PACKAGELOOKUP = table;
+	}
+	
+	public synchronized void clearPackages() {
+		this.PACKAGELOOKUP = new PackageInfo[TABLE_SIZE];
 	}
 	
 	public PackageInfo getPackageInfo(byte[] id) {
-		return getPackageInfo((int)DataPackage.getFromByte(id));
+		return PACKAGELOOKUP[index(id)];
 	}
 	
+	/**
+	 * Returns the package info for the given id.<br>
+	 * The id is used as an unsigned value, so the signed and the unsigned form of the same id return the same package.
+	 * */
 	public PackageInfo getPackageInfo(int id) {
-		return PACKAGELOOKUP.get(id);
+		return PACKAGELOOKUP[id & (TABLE_SIZE - 1)];
 	}
 	
 	public boolean hasPackage(byte[] id) {
-		return PACKAGELOOKUP.get((int)DataPackage.getFromByte(id)) != null;
+		return getPackageInfo(id) != null;
+	}
+	
+	private static int index(byte[] id) {
+		if(id.length == DataPackage.IDLENGTH) return ((id[0] & 0xFF) << 8) | (id[1] & 0xFF);
+		return (int)DataPackage.getFromByte(id) & (TABLE_SIZE - 1);
 	}
 	
 }
\ No newline at end of file
@@ -1,20 +1,29 @@
 package com.client.packageing;
 
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import com.client.basepackages.BatchPackage;
 import com.client.basepackages.CloseConnection;
 import com.client.basepackages.KeepAlive;
 import com.client.basepackages.MessagePackage;
 import com.client.basepackages.PostData;
+import com.client.basepackages.ProtocolHandshake;
 import com.client.basepackages.ReconnectPackage;
 import com.client.basepackages.RemoteClosedConnection;
 import com.client.basepackages.RequestData;
+import com.client.basepackages.StreamChunk;
 import com.client.main.Client;
 import com.client.packageing.annotations.DataPackageConstructor;
 import com.client.packageing.annotations.DataPackageDynamic;
@@ -33,9 +42,14 @@ public class PackageRegistrationManager {
 		register(DefaultPackageManager.class, PostData.class, (id,l,d,b) -> {return new PostData(b);});
 		register(DefaultPackageManager.class, ReconnectPackage.class, (id,l,d,b) -> {return new ReconnectPackage(b);});
 		register(DefaultPackageManager.class, RequestData.class, (id,l,d,b) -> {return new RequestData(b);});
+		register(DefaultPackageManager.class, ProtocolHandshake.class, (id,l,d,b) -> {return new ProtocolHandshake(b);});
+		register(DefaultPackageManager.class, StreamChunk.class, (id,l,d,b) -> {return new StreamChunk(b);});
+		register(DefaultPackageManager.class, BatchPackage.class, (id,l,d,b) -> {return new BatchPackage(b);});
 		register(DefaultPackageManager.class, RemoteClosedConnection.class, (id,l,d,b) -> {return new RemoteClosedConnection();}, (data, con) -> {
 			con.disable(Level.INFO, "Remote closed connection! Stream ended.");
 		});
+		getPackageInfo(DefaultPackageManager.class, MessagePackage.ID).setCompressible(true);
+		getPackageInfo(DefaultPackageManager.class, PostData.ID).setCompressible(true);
 	}
 	
 	/**
@@ -187,21 +201,7 @@ public class PackageRegistrationManager {
 					throw new IllegalArgumentException("Declaird constructor does not conform to the template for " + pack.getName() + "! Arguments can not be out of order!");
 				}
 					
-				constructor = (packageID, packageLength, dynamicLength, byteDataRaw) -> {
-					ArrayList<Object> initArray = new ArrayList<>();
-					if(annotation.ID()) initArray.add(packageID);
-					if(annotation.LENGTH()) initArray.add(packageLength);
-					if(annotation.DYNAMIC()) initArray.add(dynamicLength);
-					if(annotation.DATA()) initArray.add(byteDataRaw);
-					Object[] initArgs = initArray.toArray();
-					try {
-						return (DataPackage) c.newInstance(initArgs);
-					} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-							| InvocationTargetException e) {
-						e.printStackTrace();
-						return null;
-					}
-				};
+				constructor = createConstructor(c, annotation);
 				break;
 			}
 		}
@@ -209,6 +209,13 @@ public class PackageRegistrationManager {
 		if(!hasConstructor)
 			throw new IllegalArgumentException("No constructor was found with a @DataPackageConstructor annoation in " + pack.getName() + "!");
 		
+		PackageCodec codec = PackageCodec.forClass(pack);
+		if(codec != null) {
+			if(!dynLength && (codec.isVariableSize() || codec.getFixedSize() != length))
+				throw new IllegalArgumentException("The fields of " + pack.getName() + " do not fit the fixed package length of " + length + " bytes!");
+			constructor = decoding(pack, codec, constructor);
+		}
+		
 		register(type, id, length, dynLength, constructor, packageCallBack);
 	}
 	
@@ -410,6 +417,102 @@ public class PackageRegistrationManager {
 		return getPackageInfo(type, id) != null;
 	}
 	
+	/**
+	 * Binds the annotated constructor once and returns a package constructor that calls it directly.<br>
+	 * <br>
+	 * Constructors without arguments, with only the raw data or with all four arguments are turned into a generated class with the LambdaMetafactory,
+	 * so they cost the same as a hand written lambda. Other argument combinations are called through a method handle.<br>
+	 * In both cases no reflection is used when a package is received.
+	 * 
+	 * @throws IllegalArgumentException When the constructor can not be accessed.
+	 * */
+	private static PackageConstructor createConstructor(Constructor<?> c, DataPackageConstructor annotation) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle handle;
+		try {
+			if(!Modifier.isPublic(c.getModifiers()) || !Modifier.isPublic(c.getDeclaringClass().getModifiers())) c.setAccessible(true);
+			handle = lookup.unreflectConstructor(c);
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new IllegalArgumentException("Can not access the constructor of " + c.getDeclaringClass().getName() + "!", e);
+		}
+		
+		int[] order = new int[handle.type().parameterCount()];
+		int count = 0;
+		if(annotation.ID()) order[count++] = 0;
+		if(annotation.LENGTH()) order[count++] = 1;
+		if(annotation.DYNAMIC()) order[count++] = 2;
+		if(annotation.DATA()) order[count++] = 3;
+		
+		try {
+			if(count == 0) {
+				Supplier<?> factory = (Supplier<?>) metafactory(lookup, handle, "get", Supplier.class, MethodType.methodType(Object.class));
+				return guarded(c, (packageID, packageLength, dynamicLength, byteDataRaw) -> (DataPackage) factory.get());
+			}
+			if(count == 1 && annotation.DATA()) {
+				Function<?, ?> factory = (Function<?, ?>) metafactory(lookup, handle, "apply", Function.class, MethodType.methodType(Object.class, Object.class));
+				@SuppressWarnings("unchecked")
+				Function<byte[], ?> dataFactory = (Function<byte[], ?>) factory;
+				return guarded(c, (packageID, packageLength, dynamicLength, byteDataRaw) -> (DataPackage) dataFactory.apply(byteDataRaw));
+			}
+			if(count == 4) {
+				return guarded(c, (PackageConstructor) metafactory(lookup, handle, "build", PackageConstructor.class, 
+						MethodType.methodType(DataPackage.class, byte[].class, short.class, boolean.class, byte[].class)));
+			}
+		} catch (Throwable e) {
+			Client.getLogger().log(Level.DEBUG, "Could not generate a constructor for " + c.getDeclaringClass().getName() + ". Using a method handle instead.");
+		}
+		
+		MethodType fullType = MethodType.methodType(DataPackage.class, byte[].class, short.class, boolean.class, byte[].class);
+		MethodHandle invoker = MethodHandles.permuteArguments(handle.asType(handle.type().changeReturnType(DataPackage.class)), fullType, order);
+		return guarded(c, (packageID, packageLength, dynamicLength, byteDataRaw) -> {
+			try {
+				return (DataPackage) invoker.invokeExact(packageID, packageLength, dynamicLength, byteDataRaw);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+	
+	/**
+	 * Reads the marked fields of the built package from the received payload.<br>
+	 * Logs payloads that do not match the fields and returns null like a failing constructor.
+	 * */
+	private static PackageConstructor decoding(Class<?> pack, PackageCodec codec, PackageConstructor constructor) {
+		return (packageID, packageLength, dynamicLength, byteDataRaw) -> {
+			DataPackage data = constructor.build(packageID, packageLength, dynamicLength, byteDataRaw);
+			if(data == null || byteDataRaw == null) return data;
+			try {
+				codec.read(data, ByteBuffer.wrap(byteDataRaw));
+				return data;
+			}catch(RuntimeException e) {
+				Client.getLogger().log(Level.ERROR, "Could not decode the fields of " + pack.getName() + "!");
+				Client.getLogger().log(Level.ERROR, e, e.getClass());
+				return null;
+			}
+		};
+	}
+	
+	private static Object metafactory(MethodHandles.Lookup lookup, MethodHandle handle, String name, Class<?> type, MethodType samType) throws Throwable {
+		return LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(type), samType, handle, handle.type()).getTarget().invoke();
+	}
+	
+	/**
+	 * Logs errors thrown by the package constructor and returns null like the reflective constructor did.
+	 * */
+	private static PackageConstructor guarded(Constructor<?> c, PackageConstructor constructor) {
+		return (packageID, packageLength, dynamicLength, byteDataRaw) -> {
+			try {
+				return constructor.build(packageID, packageLength, dynamicLength, byteDataRaw);
+			} catch (RuntimeException e) {
+				Client.getLogger().log(Level.ERROR, "Could not construct package " + c.getDeclaringClass().getName() + "!");
+				Client.getLogger().log(Level.ERROR, e, e.getClass());
+				return null;
+			}
+		};
+	}
+	
 	private boolean hasCorrectParameterOrder(Class<?>[] template, Class<?>[] toCompair) {
 		boolean allNull = true;
 		for(Class<?> c : template) {
@@ -0,0 +1,212 @@
+package com.client.packageing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Cursor that reads big endian values directly from a payload array without copying it.<br>
+ * <br>
+ * A reader can be reused for any number of payloads by calling <b>reset()</b>, so a handler that keeps one reader
+ * does not create any garbage while reading primitives.<br>
+ * Strings and byte arrays are read with an int length prefix, where a length of -1 stands for <b>null</b>.
+ * This is the same layout the {@link PackageCodec} and the {@link PayloadWriter} use.<br>
+ * <br>
+ * A reader is not thread safe.
+ * 
+ * <pre>
+ * PayloadReader reader = new PayloadReader();
+ * reader.reset(data);
+ * int x = reader.readInt();
+ * String name = reader.readString();</pre>
+ * */
+public final class PayloadReader {
+
+	static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	static final VarHandle CHAR = MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+	static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	static final VarHandle FLOAT = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+	static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private byte[] data = EMPTY;
+	private int position = 0;
+	private int limit = 0;
+
+	/**
+	 * Creates a reader without data. Call <b>reset()</b> before reading.
+	 * */
+	public PayloadReader() {}
+
+	/**
+	 * Creates a reader over the whole array.
+	 * */
+	public PayloadReader(byte[] data) {
+		reset(data);
+	}
+
+	/**
+	 * Starts reading the whole array from the beginning.
+	 * */
+	public PayloadReader reset(byte[] data) {
+		return reset(data, 0, data.length);
+	}
+
+	/**
+	 * Starts reading <b>length</b> bytes of the array from <b>offset</b> on.
+	 * 
+	 * @throws IndexOutOfBoundsException When the range is not inside of the array.
+	 * */
+	public PayloadReader reset(byte[] data, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > data.length - length)
+			throw new IndexOutOfBoundsException("Range " + offset + " + " + length + " is out of bounds for length " + data.length);
+		this.data = data;
+		this.position = offset;
+		this.limit = offset + length;
+		return this;
+	}
+
+	/**
+	 * Starts reading the raw payload of the package.
+	 * */
+	public PayloadReader reset(DataPackage data) {
+		return reset(data.getByteDataRaw());
+	}
+
+	private int advance(int count) {
+		if(count > limit - position)
+			throw new IndexOutOfBoundsException("Can not read " + count + " bytes, only " + (limit - position) + " bytes are remaining!");
+		int at = position;
+		position += count;
+		return at;
+	}
+
+	public boolean readBoolean() {
+		return data[advance(1)] != 0;
+	}
+
+	public byte readByte() {
+		return data[advance(1)];
+	}
+
+	/**
+	 * Reads one byte as value from 0 to 255.
+	 * */
+	public int readUnsignedByte() {
+		return data[advance(1)] & 0xFF;
+	}
+
+	public short readShort() {
+		return (short) SHORT.get(data, advance(Short.BYTES));
+	}
+
+	public char readChar() {
+		return (char) CHAR.get(data, advance(Character.BYTES));
+	}
+
+	public int readInt() {
+		return (int) INT.get(data, advance(Integer.BYTES));
+	}
+
+	public long readLong() {
+		return (long) LONG.get(data, advance(Long.BYTES));
+	}
+
+	public float readFloat() {
+		return (float) FLOAT.get(data, advance(Float.BYTES));
+	}
+
+	public double readDouble() {
+		return (double) DOUBLE.get(data, advance(Double.BYTES));
+	}
+
+	/**
+	 * Reads a length prefixed UTF-8 string.
+	 * 
+	 * @return The string or null when the length prefix is -1.
+	 * */
+	public String readString() {
+		int length = readLength();
+		if(length < 0) return null;
+		return Utf8.get(data, advance(length), length);
+	}
+
+	/**
+	 * Reads a length prefixed byte array into a new array.
+	 * 
+	 * @return The array or null when the length prefix is -1.
+	 * */
+	public byte[] readBytes() {
+		int length = readLength();
+		if(length < 0) return null;
+		byte[] out = new byte[length];
+		System.arraycopy(data, advance(length), out, 0, length);
+		return out;
+	}
+
+	/**
+	 * Copies the next <b>length</b> bytes into the array.
+	 * */
+	public void readFully(byte[] out, int offset, int length) {
+		System.arraycopy(data, advance(length), out, offset, length);
+	}
+
+	/**
+	 * Points the <b>target</b> reader at the next <b>length</b> bytes and skips them in this reader.<br>
+	 * No bytes are copied, the target reads from the same array.
+	 * 
+	 * @return The target reader.
+	 * */
+	public PayloadReader readSlice(PayloadReader target, int length) {
+		return target.reset(data, advance(length), length);
+	}
+
+	/**
+	 * Points the <b>target</b> reader at the next length prefixed byte array and skips it in this reader.
+	 * 
+	 * @return The target reader. A null array gives an empty target.
+	 * */
+	public PayloadReader readSlice(PayloadReader target) {
+		int length = readLength();
+		return readSlice(target, Math.max(length, 0));
+	}
+
+	private int readLength() {
+		int length = readInt();
+		if(length < -1 || length > limit - position)
+			throw new IndexOutOfBoundsException("Length " + length + " does not fit the " + (limit - position) + " remaining bytes!");
+		return length;
+	}
+
+	public void skip(int count) {
+		advance(count);
+	}
+
+	/**
+	 * Returns the number of bytes left to read.
+	 * */
+	public int remaining() {
+		return limit - position;
+	}
+
+	public boolean hasRemaining() {
+		return position < limit;
+	}
+
+	/**
+	 * Returns the position of the cursor in the underlying array.
+	 * */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Returns the underlying array.
+	 * */
+	public byte[] array() {
+		return data;
+	}
+
+}
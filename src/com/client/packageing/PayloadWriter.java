@@ -0,0 +1,173 @@
+package com.client.packageing;
+
+/**
+ * Cursor that writes big endian values directly into a payload array.<br>
+ * <br>
+ * The writer does not grow the array. The size of the payload can be computed up front with the <b>sizeOf()</b> functions,
+ * so the array can be allocated once with the exact length a package needs for <b>getByteDataRaw()</b>.
+ * A writer can be reused for any number of arrays by calling <b>reset()</b>.<br>
+ * Strings and byte arrays are written with an int length prefix, where a length of -1 stands for <b>null</b>.<br>
+ * <br>
+ * A writer is not thread safe.
+ * */
+public final class PayloadWriter {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private byte[] data = EMPTY;
+	private int position = 0;
+	private int limit = 0;
+
+	/**
+	 * Creates a writer without an array. Call <b>reset()</b> before writing.
+	 * */
+	public PayloadWriter() {}
+
+	/**
+	 * Creates a writer over the whole array.
+	 * */
+	public PayloadWriter(byte[] data) {
+		reset(data);
+	}
+
+	/**
+	 * Starts writing at the beginning of the array.
+	 * */
+	public PayloadWriter reset(byte[] data) {
+		return reset(data, 0, data.length);
+	}
+
+	/**
+	 * Starts writing up to <b>length</b> bytes into the array from <b>offset</b> on.
+	 * 
+	 * @throws IndexOutOfBoundsException When the range is not inside of the array.
+	 * */
+	public PayloadWriter reset(byte[] data, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > data.length - length)
+			throw new IndexOutOfBoundsException("Range " + offset + " + " + length + " is out of bounds for length " + data.length);
+		this.data = data;
+		this.position = offset;
+		this.limit = offset + length;
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes a length prefixed string takes up.
+	 * */
+	public static int sizeOf(String s) {
+		return Integer.BYTES + (s == null ? 0 : Utf8.length(s));
+	}
+
+	/**
+	 * Returns the number of bytes a length prefixed byte array takes up.
+	 * */
+	public static int sizeOf(byte[] b) {
+		return Integer.BYTES + (b == null ? 0 : b.length);
+	}
+
+	private int advance(int count) {
+		if(count > limit - position)
+			throw new IndexOutOfBoundsException("Can not write " + count + " bytes, only " + (limit - position) + " bytes are remaining!");
+		int at = position;
+		position += count;
+		return at;
+	}
+
+	public PayloadWriter writeBoolean(boolean b) {
+		data[advance(1)] = b ? (byte)1 : (byte)0;
+		return this;
+	}
+
+	public PayloadWriter writeByte(int b) {
+		data[advance(1)] = (byte)b;
+		return this;
+	}
+
+	public PayloadWriter writeShort(short s) {
+		PayloadReader.SHORT.set(data, advance(Short.BYTES), s);
+		return this;
+	}
+
+	public PayloadWriter writeChar(char c) {
+		PayloadReader.CHAR.set(data, advance(Character.BYTES), c);
+		return this;
+	}
+
+	public PayloadWriter writeInt(int i) {
+		PayloadReader.INT.set(data, advance(Integer.BYTES), i);
+		return this;
+	}
+
+	public PayloadWriter writeLong(long l) {
+		PayloadReader.LONG.set(data, advance(Long.BYTES), l);
+		return this;
+	}
+
+	public PayloadWriter writeFloat(float f) {
+		PayloadReader.FLOAT.set(data, advance(Float.BYTES), f);
+		return this;
+	}
+
+	public PayloadWriter writeDouble(double d) {
+		PayloadReader.DOUBLE.set(data, advance(Double.BYTES), d);
+		return this;
+	}
+
+	/**
+	 * Writes a length prefixed UTF-8 string. <b>null</b> is written as length -1.
+	 * */
+	public PayloadWriter writeString(String s) {
+		if(s == null) return writeInt(-1);
+		int length = Utf8.length(s);
+		int at = advance(Integer.BYTES + length);
+		PayloadReader.INT.set(data, at, length);
+		Utf8.put(data, at + Integer.BYTES, s);
+		return this;
+	}
+
+	/**
+	 * Writes a length prefixed byte array. <b>null</b> is written as length -1.
+	 * */
+	public PayloadWriter writeBytes(byte[] b) {
+		if(b == null) return writeInt(-1);
+		int at = advance(Integer.BYTES + b.length);
+		PayloadReader.INT.set(data, at, b.length);
+		System.arraycopy(b, 0, data, at + Integer.BYTES, b.length);
+		return this;
+	}
+
+	/**
+	 * Writes <b>length</b> bytes of the array without a length prefix.
+	 * */
+	public PayloadWriter write(byte[] b, int offset, int length) {
+		System.arraycopy(b, offset, data, advance(length), length);
+		return this;
+	}
+
+	public PayloadWriter skip(int count) {
+		advance(count);
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes that can still be written.
+	 * */
+	public int remaining() {
+		return limit - position;
+	}
+
+	/**
+	 * Returns the position of the cursor in the underlying array.
+	 * */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Returns the underlying array.
+	 * */
+	public byte[] array() {
+		return data;
+	}
+
+}
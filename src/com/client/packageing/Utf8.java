@@ -0,0 +1,87 @@
+package com.client.packageing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 helpers that work directly on buffers without encoding the string into a temporary array first.
+ * */
+final class Utf8 {
+
+	private Utf8() {}
+
+	/**
+	 * Returns the number of bytes of the UTF-8 form of the string.
+	 * */
+	static int length(String s) {
+		int length = s.length();
+		int bytes = length;
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) continue;
+			if(c < 0x800) {
+				bytes++;
+			}else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				bytes += 2;
+				i++;
+			}else if(!Character.isSurrogate(c)) {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the UTF-8 form of the string. Unpaired surrogates are written as '?' like <b>String.getBytes()</b> does.<br>
+	 * The buffer needs at least <b>length(s)</b> bytes remaining.
+	 * */
+	static void put(ByteBuffer out, String s) {
+		if(!out.hasArray()) {
+			out.put(s.getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		int end = put(out.array(), out.arrayOffset() + out.position(), s);
+		out.position(end - out.arrayOffset());
+	}
+
+	/**
+	 * Writes the UTF-8 form of the string into the array starting at <b>offset</b>.
+	 * 
+	 * @return The offset behind the last written byte.
+	 * */
+	static int put(byte[] out, int offset, String s) {
+		int length = s.length();
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				out[offset++] = (byte)c;
+			}else if(c < 0x800) {
+				out[offset++] = (byte)(0xC0 | (c >> 6));
+				out[offset++] = (byte)(0x80 | (c & 0x3F));
+			}else if(Character.isSurrogate(c)) {
+				if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, s.charAt(++i));
+					out[offset++] = (byte)(0xF0 | (cp >> 18));
+					out[offset++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+					out[offset++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+					out[offset++] = (byte)(0x80 | (cp & 0x3F));
+				}else {
+					out[offset++] = (byte)'?';
+				}
+			}else {
+				out[offset++] = (byte)(0xE0 | (c >> 12));
+				out[offset++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				out[offset++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Reads <b>length</b> bytes of UTF-8 from the array.
+	 * */
+	static String get(byte[] data, int offset, int length) {
+		return new String(data, offset, length, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.client.packageing.annotations;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a package that is written to and read from the payload by the package codec.<br>
+ * The fields are written in ascending <b>order</b>. The encoding is taken from the type of the field:<br>
+ * boolean, byte, short, char, int, long, float, double, String and byte[].
+ * */
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface DataPackageField {
+	public int order();
+}
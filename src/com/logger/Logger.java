@@ -29,7 +29,17 @@ public class Logger {
 		p = new Printer(PrintingType.FlatFile, mode, fileAccess);
 	}
 	
+	/**
+	 * Debug messages are only printed when the mode contains {@link PrintMode#DEBUG}. All other levels are always printed.<br>
+	 * Every log function checks this. Use it to skip building expensive debug messages.
+	 * */
+	public boolean isLoggable(Level level) {
+		if(level != Level.DEBUG) return true;
+		return (this.mode & PrintMode.DEBUG) != 0;
+	}
+	
 	public void log(Level level, String s) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		if(s == null) {
 			out += " [string was null]";
@@ -40,6 +50,7 @@ public class Logger {
 	}
 	
 	public void log(Level level, String s, Class<?> type) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		out += (type != null ? " " + type.getName() + " " : " ");		
@@ -49,6 +60,7 @@ public class Logger {
 	}
 	
 	public void log(Level level, Exception e, Class<?> type) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		out += (type != null ? " " + type.getName() + " " : " ");		
@@ -58,6 +70,7 @@ public class Logger {
 	}
 	
 	public void log(Level level, Exception e) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		out += " " + (e != null ? e.getMessage() : "[Exception was null]");
@@ -66,6 +79,7 @@ public class Logger {
 	}
 	
 	public void log(Level level, Collection<?> l) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		if(l != null) {
@@ -84,6 +98,7 @@ public class Logger {
 	}
 	
 	public void log(Level level, Map<?, ?> m) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		if(m != null) {
@@ -109,6 +124,7 @@ public class Logger {
 	}
 		
 	public void log(Level level, Object o) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		if(o != null) {
@@ -142,6 +158,7 @@ public class Logger {
 	}
 	
 	public void log(Level level, LogInterface i) {
+		if(!isLoggable(level)) return;
 		String out = getStackTrace(level);
 		
 		out += " " + i.log();